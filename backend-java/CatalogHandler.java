@@ -0,0 +1,47 @@
+package com.webpojede.webhook;
+
+import com.stripe.model.Event;
+import com.stripe.model.Price;
+import com.stripe.model.Product;
+import com.stripe.model.StripeObject;
+import com.webpojede.service.PriceCatalog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Změny cen a produktů → {@link PriceCatalog}.
+ *
+ * @author WebPojede
+ */
+@Component
+public class CatalogHandler implements StripeEventHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogHandler.class);
+
+    private final PriceCatalog priceCatalog;
+
+    public CatalogHandler(PriceCatalog priceCatalog) {
+        this.priceCatalog = priceCatalog;
+    }
+
+    @Override
+    public Set<String> eventTypes() {
+        return Set.of("price.created", "price.updated", "price.deleted",
+            "product.created", "product.updated", "product.deleted");
+    }
+
+    @Override
+    public void handle(Event event, StripeObject object) {
+        boolean deleted = event.getType().endsWith(".deleted");
+        if (object instanceof Price price) {
+            priceCatalog.apply(price, deleted, event.getCreated());
+            log.info("Price catalog updated priceId={} event={}", price.getId(), event.getType());
+        } else if (object instanceof Product product) {
+            priceCatalog.apply(product, deleted, event.getCreated());
+            log.info("Price catalog updated productId={} event={}", product.getId(), event.getType());
+        }
+    }
+}
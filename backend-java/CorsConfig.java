@@ -1,85 +1,58 @@
 package com.webpojede.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.cors.CorsConfiguration;
-import org.springframework.web.cors.CorsConfigurationSource;
-import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
-import org.springframework.web.servlet.config.annotation.CorsRegistry;
-import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.core.Ordered;
 
-import java.util.Arrays;
 import java.util.List;
 
 /**
  * CORS Configuration pro Spring Boot.
- * 
+ *
  * Povoluje cross-origin requesty z frontendu (Next.js, Vite, atd.).
- * 
+ * Jediný zdroj pravdy jsou properties {@code cors.*} – controllery
+ * nemají {@code @CrossOrigin} a Spring MVC CORS neřeší, vše vyřídí
+ * {@link CorsPolicyFilter} hned za měřením prvního požadavku.
+ * Hodnoty nemají výchozí hodnotu v kódu – chybějící property
+ * zastaví start aplikace.
+ *
  * @author WebPojede
  */
 @Configuration
-public class CorsConfig implements WebMvcConfigurer {
+public class CorsConfig {
 
-    @Override
-    public void addCorsMappings(CorsRegistry registry) {
-        registry.addMapping("/api/**")
-            .allowedOrigins(
-                "http://localhost:3000",      // Next.js dev server
-                "http://localhost:5173",      // Vite dev server
-                "http://localhost:5500",      // Live Server
-                "http://127.0.0.1:5500",      // Live Server alternativa
-                "https://webpojede.cz",       // Produkce
-                "https://www.webpojede.cz"    // Produkce s www
-            )
-            .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
-            .allowedHeaders("*")
-            .allowCredentials(true)
-            .maxAge(3600); // 1 hodina cache pro preflight
-    }
+    @Value("${cors.path-prefix}")
+    private String pathPrefix;
+
+    @Value("${cors.allowed-origins}")
+    private List<String> allowedOrigins;
+
+    @Value("${cors.allowed-methods}")
+    private List<String> allowedMethods;
+
+    @Value("${cors.allowed-headers}")
+    private List<String> allowedHeaders;
+
+    @Value("${cors.exposed-headers}")
+    private List<String> exposedHeaders;
+
+    @Value("${cors.allow-credentials}")
+    private boolean allowCredentials;
+
+    @Value("${cors.max-age-seconds}")
+    private long maxAgeSeconds;
 
-    /**
-     * Alternativní bean-based konfigurace (použij jedno nebo druhé).
-     */
     @Bean
-    public CorsConfigurationSource corsConfigurationSource() {
-        CorsConfiguration configuration = new CorsConfiguration();
-        
-        configuration.setAllowedOrigins(Arrays.asList(
-            "http://localhost:3000",
-            "http://localhost:5173",
-            "http://localhost:5500",
-            "http://127.0.0.1:5500",
-            "https://webpojede.cz",
-            "https://www.webpojede.cz"
-        ));
-        
-        configuration.setAllowedMethods(Arrays.asList(
-            "GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"
-        ));
-        
-        configuration.setAllowedHeaders(Arrays.asList(
-            "Authorization",
-            "Content-Type",
-            "X-Requested-With",
-            "Accept",
-            "Origin",
-            "Access-Control-Request-Method",
-            "Access-Control-Request-Headers",
-            "Stripe-Signature"  // Pro Stripe webhooky
-        ));
-        
-        configuration.setExposedHeaders(List.of(
-            "Access-Control-Allow-Origin",
-            "Access-Control-Allow-Credentials"
-        ));
-        
-        configuration.setAllowCredentials(true);
-        configuration.setMaxAge(3600L);
+    public FilterRegistrationBean<CorsPolicyFilter> corsPolicyFilter() {
+        CorsPolicyFilter filter = new CorsPolicyFilter(pathPrefix, allowedOrigins, allowedMethods,
+            allowedHeaders, exposedHeaders, allowCredentials, maxAgeSeconds);
 
-        UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
-        source.registerCorsConfiguration("/api/**", configuration);
-        
-        return source;
+        FilterRegistrationBean<CorsPolicyFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns(pathPrefix + "*");
+        // Před ostatními filtry (kromě měření prvního požadavku), preflight nemá čím dalším procházet
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
     }
 }
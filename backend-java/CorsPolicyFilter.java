@@ -0,0 +1,137 @@
+package com.webpojede.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * CORS pro /api – jediné místo, kde se CORS řeší.
+ *
+ * Všechno, co jde spočítat předem, se spočítá při startu: povolené origins
+ * jsou v hash mapě a hlavičky odpovědi jsou předpřipravené řetězce.
+ * Preflight {@code OPTIONS} se vyřídí hned tady a do Spring MVC vůbec
+ * nejde. Za běhu se nic nealokuje ani neparsuje.
+ *
+ * Požadavek z nepovoleného originu projde bez CORS hlaviček (prohlížeč
+ * odpověď zablokuje), preflight z něj dostane 403. {@code Vary} dostane
+ * každá odpověď pod prefixem, i bez Origin.
+ *
+ * @author WebPojede
+ */
+public class CorsPolicyFilter extends HttpFilter {
+
+    private static final String ORIGIN = "Origin";
+    private static final String REQUEST_METHOD = "Access-Control-Request-Method";
+    private static final String ALLOW_ORIGIN = "Access-Control-Allow-Origin";
+    private static final String VARY = "Vary";
+    private static final String VARY_VALUE = "Origin, Access-Control-Request-Method, Access-Control-Request-Headers";
+
+    private final String pathPrefix;
+    // Origin → stejný řetězec; do odpovědi jde instance z mapy, ne z požadavku
+    private final Map<String, String> origins = new HashMap<>();
+    private final Set<String> methods = new HashSet<>();
+    private final String[] preflightNames;
+    private final String[] preflightValues;
+    private final String[] actualNames;
+    private final String[] actualValues;
+
+    public CorsPolicyFilter(String pathPrefix, Collection<String> origins, Collection<String> methods,
+                            Collection<String> headers, Collection<String> exposedHeaders,
+                            boolean allowCredentials, long maxAgeSeconds) {
+        this.pathPrefix = pathPrefix;
+        origins.forEach(origin -> this.origins.put(origin, origin));
+        this.methods.addAll(methods);
+
+        HeaderSet preflight = new HeaderSet()
+            .add("Access-Control-Allow-Methods", String.join(", ", methods))
+            .add("Access-Control-Allow-Headers", String.join(", ", headers))
+            .add("Access-Control-Max-Age", Long.toString(maxAgeSeconds));
+        HeaderSet actual = new HeaderSet();
+        if (allowCredentials) {
+            preflight.add("Access-Control-Allow-Credentials", "true");
+            actual.add("Access-Control-Allow-Credentials", "true");
+        }
+        if (!exposedHeaders.isEmpty()) {
+            actual.add("Access-Control-Expose-Headers", String.join(", ", exposedHeaders));
+        }
+        this.preflightNames = preflight.names();
+        this.preflightValues = preflight.values();
+        this.actualNames = actual.names();
+        this.actualValues = actual.values();
+    }
+
+    @Override
+    protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (!request.getRequestURI().startsWith(pathPrefix)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        // Odpověď závisí na Origin i bez něj – sdílená cache (Cache-Control: public)
+        // jinak vrátí verzi bez CORS hlaviček i prohlížeči z povoleného originu
+        response.setHeader(VARY, VARY_VALUE);
+
+        String origin = request.getHeader(ORIGIN);
+        if (origin == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String allowedOrigin = origins.get(origin);
+        String requestedMethod = request.getHeader(REQUEST_METHOD);
+
+        if (requestedMethod != null && "OPTIONS".equals(request.getMethod())) {
+            if (allowedOrigin == null || !methods.contains(requestedMethod)) {
+                response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+                return;
+            }
+            response.setHeader(ALLOW_ORIGIN, allowedOrigin);
+            setHeaders(response, preflightNames, preflightValues);
+            response.setStatus(HttpServletResponse.SC_OK);
+            return;
+        }
+
+        if (allowedOrigin != null) {
+            response.setHeader(ALLOW_ORIGIN, allowedOrigin);
+            setHeaders(response, actualNames, actualValues);
+        }
+        chain.doFilter(request, response);
+    }
+
+    private static void setHeaders(HttpServletResponse response, String[] names, String[] values) {
+        for (int i = 0; i < names.length; i++) {
+            response.setHeader(names[i], values[i]);
+        }
+    }
+
+    /**
+     * Sestavení předpřipravených hlaviček (jen při startu).
+     */
+    private static final class HeaderSet {
+
+        private final Map<String, String> headers = new LinkedHashMap<>();
+
+        HeaderSet add(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        String[] names() {
+            return headers.keySet().toArray(String[]::new);
+        }
+
+        String[] values() {
+            return headers.values().toArray(String[]::new);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.webpojede.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stripe.exception.StripeException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Lokální cache e-mail → Stripe customerId.
+ *
+ * Ušetří {@code Customer.list} (a případně {@code Customer.create}) při
+ * každém vytvoření předplatného. Souběžné požadavky na stejný e-mail
+ * čekají na jeden společný lookup, takže nevzniknou duplicitní zákazníci.
+ * Cache se plní i z webhooku {@code customer.created}.
+ *
+ * Eviction řeší Caffeine (W-TinyLFU, omezená velikost).
+ *
+ * @author WebPojede
+ */
+@Component
+public class CustomerCache {
+
+    // Zástupný e-mail zákazníka bez e-mailu – vždy nový zákazník, do cache nepatří
+    private static final String ANONYMOUS_PREFIX = "customer_";
+    private static final String ANONYMOUS_DOMAIN = "@webpojede.cz";
+
+    @Value("${customer.cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${customer.cache.ttl-hours:24}")
+    private long ttlHours;
+
+    private final MeterRegistry meterRegistry;
+
+    private AsyncCache<String, String> cache;
+    private Timer lookupLatency;
+    private Counter hits;
+    private Counter misses;
+    private Counter coalesced;
+
+    public CustomerCache(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofHours(ttlHours))
+            .buildAsync();
+
+        lookupLatency = Timer.builder("customer.cache.lookup")
+            .description("Doba získání customerId (včetně případného volání Stripe)")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        hits = Counter.builder("customer.cache.requests").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("customer.cache.requests").tag("result", "miss").register(meterRegistry);
+        coalesced = Counter.builder("customer.cache.requests").tag("result", "coalesced").register(meterRegistry);
+        Gauge.builder("customer.cache.size", cache, c -> c.synchronous().estimatedSize())
+            .register(meterRegistry);
+    }
+
+    /**
+     * Vrátí customerId pro e-mail. Při cache miss zavolá loader – souběžná
+     * volání pro stejný e-mail sdílí jeden výsledek.
+     */
+    public String get(String email, Loader loader) throws StripeException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            CompletableFuture<String> created = new CompletableFuture<>();
+            CompletableFuture<String> existing = cache.asMap().putIfAbsent(email, created);
+
+            if (existing != null) {
+                (existing.isDone() ? hits : coalesced).increment();
+                return await(existing);
+            }
+
+            misses.increment();
+            try {
+                created.complete(loader.load(email));
+            } catch (StripeException | RuntimeException e) {
+                // Neúspěšný future Caffeine z cache sám odstraní
+                created.completeExceptionally(e);
+                throw e;
+            }
+            return created.join();
+        } finally {
+            sample.stop(lookupLatency);
+        }
+    }
+
+    /**
+     * Write-through z webhooku – existující záznam se nepřepisuje.
+     */
+    public void put(String email, String customerId) {
+        cache.asMap().putIfAbsent(email, CompletableFuture.completedFuture(customerId));
+    }
+
+    /**
+     * Zákazník byl ve Stripe smazán – záznam se odstraní, jen pokud
+     * patří tomuto customerId (novější zákazník se stejným e-mailem zůstane).
+     */
+    public void evict(String email, String customerId) {
+        cache.asMap().computeIfPresent(email, (key, future) ->
+            future.isDone() && !future.isCompletedExceptionally() && customerId.equals(future.join())
+                ? null : future);
+    }
+
+    /**
+     * Nový jedinečný zástupný e-mail pro zákazníka, který e-mail nezadal.
+     */
+    public static String anonymousEmail() {
+        return ANONYMOUS_PREFIX + UUID.randomUUID() + ANONYMOUS_DOMAIN;
+    }
+
+    /**
+     * Zástupný e-mail z {@link #anonymousEmail()} – nehledá se podle něj.
+     */
+    public static boolean isAnonymous(String email) {
+        return email.length() == ANONYMOUS_PREFIX.length() + 36 + ANONYMOUS_DOMAIN.length()
+            && email.startsWith(ANONYMOUS_PREFIX) && email.endsWith(ANONYMOUS_DOMAIN);
+    }
+
+    private static String await(CompletableFuture<String> future) throws StripeException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof StripeException stripeException) {
+                throw stripeException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Načtení customerId ze Stripe (najdi nebo vytvoř).
+     */
+    @FunctionalInterface
+    public interface Loader {
+        String load(String email) throws StripeException;
+    }
+}
@@ -0,0 +1,226 @@
+package com.webpojede.webhook;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Hlavička Stripe události (id, typ a klíč objektu) bez deserializace celého objektu.
+ *
+ * Payload se projde streamovacím parserem a nepotřebné hodnoty se jen
+ * přeskočí, takže se nevytváří žádný objektový strom. Varianta nad
+ * {@code byte[]} (webhook controller) nedekóduje ani znaky – hledá klíče
+ * {@code id} a {@code type} přímo v UTF-8 bajtech na nejvyšší úrovni.
+ *
+ * @author WebPojede
+ */
+public record EventEnvelope(String id, String type, String objectKey) {
+
+    /**
+     * Přečte id a typ z raw JSON payloadu.
+     *
+     * @throws IllegalArgumentException pokud payload není JSON objekt
+     */
+    public static EventEnvelope peek(String payload) {
+        return parse(payload, false);
+    }
+
+    /**
+     * Přečte id a typ z raw UTF-8 bajtů {@code [0, length)}. Alokují se jen
+     * výsledné dva řetězce. Výsledek je stejný jako u {@link #peek(String)}
+     * – čtení skončí, jakmile je známé id i typ.
+     *
+     * @throws IllegalArgumentException pokud payload není JSON objekt
+     *         (včetně useknutého dřív, než se našlo id i typ)
+     */
+    public static EventEnvelope peek(byte[] payload, int length) {
+        int i = skipWhitespace(payload, 0, length);
+        if (i >= length || payload[i] != '{') {
+            throw new IllegalArgumentException("Invalid event payload");
+        }
+
+        String id = null;
+        String type = null;
+        int depth = 0;
+        boolean expectKey = false;
+
+        for (; i < length; i++) {
+            switch (payload[i]) {
+                case '{' -> {
+                    depth++;
+                    expectKey = depth == 1;
+                }
+                case '[' -> depth++;
+                case '}', ']' -> {
+                    if (--depth == 0) {
+                        // Konec objektu na nejvyšší úrovni
+                        return new EventEnvelope(id, type, null);
+                    }
+                }
+                case ',' -> expectKey = depth == 1;
+                case '"' -> {
+                    int end = stringEnd(payload, i + 1, length);
+                    if (!expectKey) {
+                        i = end;
+                        break;
+                    }
+                    // Klíč na nejvyšší úrovni
+                    expectKey = false;
+                    if (indexOf(payload, i + 1, end, (byte) '\\') >= 0) {
+                        // Escapovaný klíč (i id může být zapsané escape sekvencí) – plný parser
+                        return peek(new String(payload, 0, length, StandardCharsets.UTF_8));
+                    }
+                    boolean isId = equalsAscii(payload, i + 1, end, "id");
+                    boolean isType = !isId && equalsAscii(payload, i + 1, end, "type");
+                    int colon = skipWhitespace(payload, end + 1, length);
+                    if (colon >= length || payload[colon] != ':') {
+                        throw new IllegalArgumentException("Invalid event payload");
+                    }
+                    int value = skipWhitespace(payload, colon + 1, length);
+                    if ((isId || isType) && value < length && payload[value] == '"') {
+                        int valueEnd = stringEnd(payload, value + 1, length);
+                        if (indexOf(payload, value + 1, valueEnd, (byte) '\\') >= 0) {
+                            // Escapované znaky v id/typu Stripe neposílá – pro jistotu plný parser
+                            return peek(new String(payload, 0, length, StandardCharsets.UTF_8));
+                        }
+                        String text = new String(payload, value + 1, valueEnd - value - 1, StandardCharsets.UTF_8);
+                        if (isId) {
+                            id = text;
+                        } else {
+                            type = text;
+                        }
+                        if (id != null && type != null) {
+                            return new EventEnvelope(id, type, null);
+                        }
+                        i = valueEnd;
+                    } else {
+                        // Hodnotu zpracuje další průchod smyčkou
+                        i = value - 1;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        // Useknutý payload – objekt se neuzavřel dřív, než se našlo id i typ
+        throw new IllegalArgumentException("Invalid event payload");
+    }
+
+    private static int skipWhitespace(byte[] payload, int from, int length) {
+        int i = from;
+        while (i < length && (payload[i] == ' ' || payload[i] == '\n' || payload[i] == '\r' || payload[i] == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Index uzavírací uvozovky řetězce začínajícího na {@code from}.
+     */
+    private static int stringEnd(byte[] payload, int from, int length) {
+        for (int i = from; i < length; i++) {
+            if (payload[i] == '\\') {
+                i++;
+            } else if (payload[i] == '"') {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Invalid event payload");
+    }
+
+    private static boolean equalsAscii(byte[] payload, int from, int to, String text) {
+        if (to - from != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (payload[from + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] payload, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (payload[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Jako {@link #peek(String)}, navíc přečte klíč objektu, ke kterému se
+     * událost vztahuje: {@code payment_intent} (platby, charge, faktury),
+     * jinak {@code id} objektu (zákazník, předplatné...).
+     */
+    public static EventEnvelope peekWithObjectKey(String payload) {
+        return parse(payload, true);
+    }
+
+    private static EventEnvelope parse(String payload, boolean withObjectKey) {
+        try (JsonReader reader = new JsonReader(new StringReader(payload))) {
+            return read(reader, withObjectKey);
+        } catch (IOException | IllegalStateException e) {
+            throw new IllegalArgumentException("Invalid event payload", e);
+        }
+    }
+
+    private static EventEnvelope read(JsonReader reader, boolean withObjectKey) throws IOException {
+        String id = null;
+        String type = null;
+        String objectKey = null;
+        boolean objectRead = !withObjectKey;
+
+        reader.beginObject();
+        while (reader.hasNext() && (id == null || type == null || !objectRead)) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.STRING && ("id".equals(name) || "type".equals(name))) {
+                if ("id".equals(name)) {
+                    id = reader.nextString();
+                } else {
+                    type = reader.nextString();
+                }
+            } else if (!objectRead && "data".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                objectKey = readObjectKey(reader);
+                objectRead = true;
+            } else {
+                reader.skipValue();
+            }
+        }
+        return new EventEnvelope(id, type, objectKey);
+    }
+
+    /**
+     * Z {@code data.object} přečte payment_intent, případně id.
+     */
+    private static String readObjectKey(JsonReader reader) throws IOException {
+        String objectId = null;
+        String paymentIntent = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("object".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String field = reader.nextName();
+                    if (reader.peek() == JsonToken.STRING && "id".equals(field)) {
+                        objectId = reader.nextString();
+                    } else if (reader.peek() == JsonToken.STRING && "payment_intent".equals(field)) {
+                        paymentIntent = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return paymentIntent != null ? paymentIntent : objectId;
+    }
+}
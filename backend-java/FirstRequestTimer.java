@@ -0,0 +1,64 @@
+package com.webpojede.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Měří studený start: čas od spuštění procesu po dokončení prvního
+ * požadavku (včetně líné inicializace Stripe SDK, pokud ho volá).
+ *
+ * Výsledek se zaloguje a je v metrice {@code application.first.request.time}
+ * (vedle {@code application.ready.time} ze Spring Boot). Po prvním
+ * požadavku filtr jen jednou čte příznak.
+ *
+ * @author WebPojede
+ */
+public class FirstRequestTimer extends HttpFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(FirstRequestTimer.class);
+
+    private final Instant processStart;
+    private final AtomicBoolean recorded = new AtomicBoolean();
+    private volatile double firstRequestSeconds = Double.NaN;
+
+    public FirstRequestTimer(MeterRegistry meterRegistry) {
+        this.processStart = ProcessHandle.current().info().startInstant().orElseGet(Instant::now);
+        Gauge.builder("application.first.request.time", this, t -> t.firstRequestSeconds)
+            .description("Od spuštění procesu po dokončení prvního požadavku")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (recorded.get()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long startNanos = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (recorded.compareAndSet(false, true)) {
+                Duration sinceStart = Duration.between(processStart, Instant.now());
+                firstRequestSeconds = sinceStart.toNanos() / 1e9;
+                log.info("First request served uri={} status={} sinceProcessStartMs={} durationMs={}",
+                    request.getRequestURI(), response.getStatus(), sinceStart.toMillis(),
+                    Duration.ofNanos(System.nanoTime() - startNanos).toMillis());
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.webpojede.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stripe.exception.StripeException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Krátkodobá cache výsledků podle idempotency klíče.
+ *
+ * Dvojklik nebo retry z frontendu se stejným klíčem nevytvoří nový
+ * PaymentIntent: souběžné požadavky čekají na jeden společný výsledek,
+ * pozdější opakování dostanou uloženou odpověď bez volání Stripe.
+ *
+ * @author WebPojede
+ */
+@Component
+public class IdempotencyCache {
+
+    @Value("${idempotency.cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    @Value("${idempotency.cache.max-size:100000}")
+    private long maxSize;
+
+    private final MeterRegistry meterRegistry;
+
+    private AsyncCache<String, Map<String, String>> cache;
+    private Counter replayed;
+    private Counter coalesced;
+
+    public IdempotencyCache(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .buildAsync();
+
+        replayed = Counter.builder("idempotency.requests").tag("result", "replayed").register(meterRegistry);
+        coalesced = Counter.builder("idempotency.requests").tag("result", "coalesced").register(meterRegistry);
+    }
+
+    /**
+     * Provede volání jen jednou pro daný klíč, ostatní dostanou stejný výsledek.
+     */
+    public Map<String, String> execute(String key, Call call) throws StripeException {
+        CompletableFuture<Map<String, String>> created = new CompletableFuture<>();
+        CompletableFuture<Map<String, String>> existing = cache.asMap().putIfAbsent(key, created);
+
+        if (existing != null) {
+            (existing.isDone() ? replayed : coalesced).increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof StripeException stripeException) {
+                    throw stripeException;
+                }
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw e;
+            }
+        }
+
+        try {
+            created.complete(call.execute());
+        } catch (StripeException | RuntimeException e) {
+            // Chyba se necachuje – další pokus zavolá Stripe znovu
+            created.completeExceptionally(e);
+            throw e;
+        }
+        return created.join();
+    }
+
+    /**
+     * SHA-256 (hex) ze spojených hodnot – otisk obsahu požadavku ke klíči.
+     */
+    public static String hash(Object... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0x1f);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Call {
+        Map<String, String> execute() throws StripeException;
+    }
+}
@@ -0,0 +1,64 @@
+package com.webpojede.ledger;
+
+import com.webpojede.service.PaymentStatus;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dotazy do knihy plateb přes Actuator – jen pro interní použití
+ * (reporting, podpora), veřejné API to není.
+ *
+ *   GET /actuator/ledger?from=1700000000&to=1700086400&limit=100
+ *   GET /actuator/ledger/payment/pi_...
+ *   GET /actuator/ledger/customer/cus_...?limit=50
+ *
+ * Zapíná se přidáním {@code ledger} do management.endpoints.web.exposure.include.
+ *
+ * @author WebPojede
+ */
+@Component
+@Endpoint(id = "ledger")
+public class LedgerEndpoint {
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 10_000;
+
+    private final PaymentLedger ledger;
+
+    public LedgerEndpoint(PaymentLedger ledger) {
+        this.ledger = ledger;
+    }
+
+    /**
+     * Záznamy za období (epoch sekundy, jako {@code created} u Stripe).
+     */
+    @ReadOperation
+    public List<LedgerEntry> range(long from, long to, @Nullable Integer limit) {
+        return ledger.range(Instant.ofEpochSecond(from), Instant.ofEpochSecond(to), limit(limit));
+    }
+
+    /**
+     * Historie platby (i s aktuálním stavem) nebo zákazníka.
+     */
+    @ReadOperation
+    public Map<String, Object> lookup(@Selector String kind, @Selector String id, @Nullable Integer limit) {
+        return switch (kind) {
+            case "payment" -> Map.of(
+                "status", ledger.latestStatus(id).map(PaymentStatus::toResponse).orElse(Map.of()),
+                "history", ledger.paymentHistory(id));
+            case "customer" -> Map.of("history", ledger.customerHistory(id, limit(limit)));
+            default -> throw new IllegalArgumentException("Unknown ledger lookup " + kind);
+        };
+    }
+
+    private static int limit(Integer limit) {
+        return limit == null ? DEFAULT_LIMIT : Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+}
@@ -0,0 +1,137 @@
+package com.webpojede.ledger;
+
+import com.stripe.model.Charge;
+import com.stripe.model.Customer;
+import com.stripe.model.Event;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.StripeObject;
+import com.webpojede.service.PaymentStatus;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Jeden záznam lokální knihy plateb – co se stalo, kdy a s jakou platbou.
+ *
+ * Binárně: {@code created}, {@code amount} a řetězce jako
+ * {@code [short délka][UTF-8]} (délka -1 = null).
+ *
+ * @author WebPojede
+ */
+public record LedgerEntry(
+    String eventId,
+    String type,
+    long created,
+    String paymentIntentId,
+    String customerId,
+    Long amount,
+    String currency,
+    String status
+) {
+
+    private static final long NO_AMOUNT = Long.MIN_VALUE;
+
+    /**
+     * Záznam z ověřené webhook události.
+     *
+     * @throws IllegalArgumentException typ objektu, který kniha nezná
+     */
+    public static LedgerEntry of(Event event, StripeObject object) {
+        long created = event.getCreated() != null ? event.getCreated() : System.currentTimeMillis() / 1000;
+        if (object instanceof PaymentIntent paymentIntent) {
+            return new LedgerEntry(event.getId(), event.getType(), created, paymentIntent.getId(),
+                paymentIntent.getCustomer(), paymentIntent.getAmount(), paymentIntent.getCurrency(),
+                paymentIntent.getStatus());
+        }
+        if (object instanceof Charge charge) {
+            return new LedgerEntry(event.getId(), event.getType(), created, charge.getPaymentIntent(),
+                charge.getCustomer(), charge.getAmountRefunded(), charge.getCurrency(),
+                Boolean.TRUE.equals(charge.getRefunded()) ? "refunded" : "partially_refunded");
+        }
+        if (object instanceof Customer customer) {
+            return new LedgerEntry(event.getId(), event.getType(), created, null, customer.getId(),
+                null, null, null);
+        }
+        throw new IllegalArgumentException("Unsupported ledger object " + object.getClass().getSimpleName());
+    }
+
+    /**
+     * Stav platby, pokud jde o událost {@code payment_intent.*}.
+     */
+    public PaymentStatus toPaymentStatus() {
+        return new PaymentStatus(paymentIntentId, status, amount, currency);
+    }
+
+    public boolean isPaymentIntentEvent() {
+        return type.startsWith("payment_intent.");
+    }
+
+    byte[] encode() {
+        byte[][] strings = {
+            utf8(eventId), utf8(type), utf8(paymentIntentId), utf8(customerId), utf8(currency), utf8(status)
+        };
+        int size = 2 * Long.BYTES;
+        for (byte[] string : strings) {
+            size += Short.BYTES + (string != null ? string.length : 0);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putLong(created);
+        buffer.putLong(amount != null ? amount : NO_AMOUNT);
+        for (byte[] string : strings) {
+            if (string == null) {
+                buffer.putShort((short) -1);
+            } else {
+                buffer.putShort((short) string.length).put(string);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Přečte záznam absolutními gety – sdílený buffer se nemění.
+     */
+    static LedgerEntry decode(ByteBuffer buffer, int position) {
+        long created = buffer.getLong(position);
+        long amount = buffer.getLong(position + Long.BYTES);
+        int[] cursor = {position + 2 * Long.BYTES};
+        String eventId = string(buffer, cursor);
+        String type = string(buffer, cursor);
+        String paymentIntentId = string(buffer, cursor);
+        String customerId = string(buffer, cursor);
+        String currency = string(buffer, cursor);
+        String status = string(buffer, cursor);
+        return new LedgerEntry(eventId, type, created, paymentIntentId, customerId,
+            amount != NO_AMOUNT ? amount : null, currency, status);
+    }
+
+    /**
+     * Jen {@code created} – pro kompakci bez dekódování celého záznamu.
+     */
+    static long decodeCreated(ByteBuffer buffer, int position) {
+        return buffer.getLong(position);
+    }
+
+    private static String string(ByteBuffer buffer, int[] cursor) {
+        short length = buffer.getShort(cursor[0]);
+        cursor[0] += Short.BYTES;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(cursor[0], bytes);
+        cursor[0] += length;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Ledger field too long");
+        }
+        return bytes;
+    }
+}
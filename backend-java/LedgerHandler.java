@@ -0,0 +1,50 @@
+package com.webpojede.webhook;
+
+import com.stripe.model.Event;
+import com.stripe.model.StripeObject;
+import com.webpojede.ledger.LedgerEntry;
+import com.webpojede.ledger.PaymentLedger;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+
+/**
+ * Zapisuje platby, refundace a nové zákazníky do {@link PaymentLedger}.
+ *
+ * Chyba zápisu se propaguje – {@link WebhookIngestQueue} událost zkusí
+ * znovu a po vyčerpání pokusů ji odloží do dead-letter souboru.
+ *
+ * @author WebPojede
+ */
+@Component
+public class LedgerHandler implements StripeEventHandler {
+
+    private static final Set<String> TYPES = Set.of(
+        "payment_intent.succeeded",
+        "payment_intent.payment_failed",
+        "charge.refunded",
+        "customer.created"
+    );
+
+    private final PaymentLedger ledger;
+
+    public LedgerHandler(PaymentLedger ledger) {
+        this.ledger = ledger;
+    }
+
+    @Override
+    public Set<String> eventTypes() {
+        return TYPES;
+    }
+
+    @Override
+    public void handle(Event event, StripeObject object) {
+        try {
+            ledger.append(LedgerEntry.of(event, object));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
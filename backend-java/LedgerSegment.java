@@ -0,0 +1,310 @@
+package com.webpojede.ledger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjIntConsumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Jeden segment knihy plateb – soubor namapovaný do paměti.
+ *
+ * Hlavička {@code [int magic][int dataEnd][long coversThrough]}, za ní
+ * záznamy {@code [int délka][int CRC32C][data]}. Délka se zapisuje jako
+ * poslední, takže nula znamená konec dat. {@code dataEnd} se vyplní až
+ * při uzavření segmentu – aktivní segment (dataEnd = 0) se po restartu
+ * proskenuje a ořízne za posledním celým záznamem.
+ *
+ * {@code coversThrough} je číslo posledního segmentu, jehož data tenhle
+ * obsahuje (po kompakci víc segmentů do jednoho).
+ *
+ * Do segmentu zapisuje jen {@link PaymentLedger} pod svým zámkem, čte
+ * se absolutními gety bez zámku.
+ *
+ * @author WebPojede
+ */
+final class LedgerSegment {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerSegment.class);
+
+    private static final int MAGIC = 0x4C444731; // "LDG1"
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+
+    private final long number;
+    private final long coversThrough;
+    private final MappedByteBuffer buffer;
+    private Path file;
+
+    private volatile int dataEnd;
+    private volatile boolean sealed;
+    private volatile SegmentIndex index;
+    private boolean deleted;
+
+    // Líné načtení indexu dělá I/O – ReentrantLock nepřipíná virtuální vlákno
+    private final ReentrantLock indexLock = new ReentrantLock();
+
+    private LedgerSegment(Path file, long number, long coversThrough, MappedByteBuffer buffer) {
+        this.file = file;
+        this.number = number;
+        this.coversThrough = coversThrough;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Nový prázdný segment s pevnou kapacitou.
+     */
+    static LedgerSegment create(Path file, long number, long coversThrough, int capacity) throws IOException {
+        if (capacity > SegmentIndex.MAX_POSITION) {
+            throw new IllegalArgumentException("Ledger segment larger than " + SegmentIndex.MAX_POSITION + " bytes");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(Integer.BYTES, 0);
+            buffer.putLong(2 * Integer.BYTES, coversThrough);
+            LedgerSegment segment = new LedgerSegment(file, number, coversThrough, buffer);
+            segment.dataEnd = HEADER_BYTES;
+            segment.index = new SegmentIndex();
+            return segment;
+        }
+    }
+
+    /**
+     * Otevře existující segment. Uzavřený segment se neskenuje – index se
+     * načte až při prvním dotazu ({@link #index()}).
+     */
+    static LedgerSegment open(Path file, long number) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a ledger segment: " + file);
+            }
+            LedgerSegment segment = new LedgerSegment(file, number, buffer.getLong(2 * Integer.BYTES), buffer);
+            int sealedEnd = buffer.getInt(Integer.BYTES);
+            if (sealedEnd > 0) {
+                segment.dataEnd = sealedEnd;
+                segment.sealed = true;
+            } else {
+                segment.recover();
+            }
+            return segment;
+        }
+    }
+
+    /**
+     * Proskenuje aktivní segment, postaví index a ořízne neúplný záznam.
+     */
+    private void recover() {
+        SegmentIndex recovered = new SegmentIndex();
+        int position = HEADER_BYTES;
+        int torn = -1;
+        while (position + RECORD_HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            if (!valid(position, length)) {
+                torn = position;
+                break;
+            }
+            index(recovered, position);
+            position += RECORD_HEADER_BYTES + length;
+        }
+        if (torn >= 0) {
+            log.warn("Truncating torn ledger record segment={} offset={}", file.getFileName(), torn);
+            for (int i = torn; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        dataEnd = position;
+        index = recovered;
+    }
+
+    private boolean valid(int position, int length) {
+        if (length < 0 || position + RECORD_HEADER_BYTES + length > buffer.capacity()) {
+            return false;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(position + RECORD_HEADER_BYTES, length));
+        return (int) crc.getValue() == buffer.getInt(position + Integer.BYTES);
+    }
+
+    private void index(SegmentIndex target, int position) {
+        LedgerEntry entry = LedgerEntry.decode(buffer, position + RECORD_HEADER_BYTES);
+        target.add(position, entry.created(), entry.paymentIntentId(), entry.customerId());
+    }
+
+    /**
+     * Zapíše záznam na konec segmentu.
+     *
+     * @return false pokud se do segmentu nevejde
+     */
+    boolean append(LedgerEntry entry, byte[] encoded) {
+        int position = dataEnd;
+        if (position + RECORD_HEADER_BYTES + encoded.length > buffer.capacity()) {
+            return false;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(encoded);
+        buffer.put(position + RECORD_HEADER_BYTES, encoded);
+        buffer.putInt(position + Integer.BYTES, (int) crc.getValue());
+        // Délka jako poslední – do té doby záznam při obnově neexistuje
+        buffer.putInt(position, encoded.length);
+        dataEnd = position + RECORD_HEADER_BYTES + encoded.length;
+        index.add(position, entry.created(), entry.paymentIntentId(), entry.customerId());
+        return true;
+    }
+
+    /**
+     * Zkopíruje celý záznam (hlavička + data) z jiného segmentu – při kompakci.
+     */
+    void copyFrom(LedgerSegment source, int position) {
+        int length = source.recordBytes(position);
+        buffer.put(dataEnd, source.buffer, position, length);
+        LedgerEntry entry = source.read(position);
+        index.add(dataEnd, entry.created(), entry.paymentIntentId(), entry.customerId());
+        dataEnd += length;
+    }
+
+    LedgerEntry read(int position) {
+        return LedgerEntry.decode(buffer, position + RECORD_HEADER_BYTES);
+    }
+
+    /**
+     * Projde záznamy v pořadí zápisu: (segment, pozice).
+     */
+    void forEach(ObjIntConsumer<LedgerSegment> consumer) {
+        int position = HEADER_BYTES;
+        int end = dataEnd;
+        while (position < end) {
+            consumer.accept(this, position);
+            position += RECORD_HEADER_BYTES + buffer.getInt(position);
+        }
+    }
+
+    long created(int position) {
+        return LedgerEntry.decodeCreated(buffer, position + RECORD_HEADER_BYTES);
+    }
+
+    int recordBytes(int position) {
+        return RECORD_HEADER_BYTES + buffer.getInt(position);
+    }
+
+    /**
+     * Index segmentu – u uzavřeného se při prvním použití načte z .idx,
+     * a pokud chybí nebo nesedí, postaví se skenem a uloží.
+     */
+    SegmentIndex index() throws IOException {
+        SegmentIndex current = index;
+        if (current != null) {
+            return current;
+        }
+        indexLock.lock();
+        try {
+            if (index == null) {
+                SegmentIndex loaded = SegmentIndex.load(indexFile(), dataEnd, coversThrough);
+                if (loaded == null) {
+                    log.info("Rebuilding ledger index segment={}", file.getFileName());
+                    loaded = new SegmentIndex();
+                    SegmentIndex target = loaded;
+                    forEach((segment, position) -> index(target, position));
+                    if (!deleted) {
+                        loaded.seal(indexFile(), dataEnd, coversThrough);
+                    }
+                }
+                index = loaded;
+            }
+            return index;
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * Uzavře segment: zapíše konec dat do hlavičky, uloží index a vše vynutí na disk.
+     */
+    void seal() throws IOException {
+        buffer.putInt(Integer.BYTES, dataEnd);
+        buffer.force();
+        index.seal(indexFile(), dataEnd, coversThrough);
+        sealed = true;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Přejmenuje dočasný výstup kompakce na finální jméno (nahradí původní segment).
+     */
+    void moveTo(Path target) throws IOException {
+        Path targetIndex = indexFile(target);
+        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(indexFile(), targetIndex, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        file = target;
+    }
+
+    /**
+     * Smaže soubory segmentu. Namapovaná paměť zůstává platná pro
+     * rozběhnuté čtení, uvolní ji až GC.
+     */
+    void delete() throws IOException {
+        indexLock.lock();
+        try {
+            // Pozdní načtení indexu (rozběhnutý dotaz) už nesmí .idx zapsat
+            deleted = true;
+            Files.deleteIfExists(indexFile());
+            Files.deleteIfExists(file);
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    long number() {
+        return number;
+    }
+
+    long coversThrough() {
+        return coversThrough;
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    int dataEnd() {
+        return dataEnd;
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    Path file() {
+        return file;
+    }
+
+    private Path indexFile() {
+        return indexFile(file);
+    }
+
+    /**
+     * {@code segment-N.seg} → {@code segment-N.idx}
+     */
+    static Path indexFile(Path segmentFile) {
+        String name = segmentFile.getFileName().toString();
+        return segmentFile.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + ".idx");
+    }
+}
@@ -0,0 +1,60 @@
+package com.webpojede.webhook;
+
+import com.stripe.model.Customer;
+import com.stripe.model.Event;
+import com.stripe.model.StripeObject;
+import com.webpojede.service.CustomerCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Zpracování nového a smazaného zákazníka – udržuje {@link CustomerCache}.
+ *
+ * Zákazníci se zástupným e-mailem ({@link CustomerCache#anonymousEmail()})
+ * se do cache nezapisují, podle e-mailu se nikdy nehledají.
+ *
+ * @author WebPojede
+ */
+@Component
+public class NewCustomerHandler implements StripeEventHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(NewCustomerHandler.class);
+
+    private final CustomerCache customerCache;
+
+    public NewCustomerHandler(CustomerCache customerCache) {
+        this.customerCache = customerCache;
+    }
+
+    @Override
+    public Set<String> eventTypes() {
+        return Set.of("customer.created", "customer.deleted");
+    }
+
+    @Override
+    public void handle(Event event, StripeObject object) {
+        Customer customer = (Customer) object;
+        String email = customer.getEmail();
+
+        if ("customer.deleted".equals(event.getType())) {
+            log.info("Customer deleted customerId={}", customer.getId());
+            // Checkout by jinak do vypršení záznamu vracel smazané customerId
+            if (email != null) {
+                customerCache.evict(email, customer.getId());
+            }
+            return;
+        }
+
+        log.info("New customer created customerId={}", customer.getId());
+
+        // Write-through do cache - další checkout se stejným e-mailem nevolá Stripe
+        if (email != null && !CustomerCache.isAnonymous(email)) {
+            customerCache.put(email, customer.getId());
+        }
+
+        // Záznam do knihy plateb zapisuje LedgerHandler
+    }
+}
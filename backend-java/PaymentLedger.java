@@ -0,0 +1,444 @@
+package com.webpojede.ledger;
+
+import com.webpojede.config.WorkerThreads;
+import com.webpojede.service.PaymentStatus;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lokální kniha plateb – append-only log namapovaný do paměti.
+ *
+ * Webhook handlery sem zapisují platby, refundace a nové zákazníky.
+ * Stav a historie platby, historie zákazníka i výpis za období se pak
+ * čtou z in-memory indexů a namapovaných segmentů, bez volání Stripe.
+ *
+ * Data jsou v segmentech {@code segment-N.seg} pevné velikosti, zapisuje
+ * se vždy jen do posledního (aktivního). Plný segment se uzavře a jeho
+ * index se uloží do {@code segment-N.idx}. Po pádu se proto skenuje jen
+ * aktivní segment, uzavřené si index načtou na pozadí (nebo při prvním
+ * dotazu) – doba obnovy nezávisí na počtu záznamů v knize.
+ *
+ * Kompakce slučuje řídké uzavřené segmenty a zahazuje záznamy starší
+ * než {@code ledger.retention-days}.
+ *
+ * @author WebPojede
+ */
+@Component
+public class PaymentLedger {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentLedger.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    @Value("${ledger.dir:./data/ledger}")
+    private String dir;
+
+    @Value("${ledger.segment-bytes:67108864}")
+    private int segmentBytes;
+
+    @Value("${ledger.fsync:false}")
+    private boolean fsync;
+
+    @Value("${ledger.retention-days:0}")
+    private int retentionDays;
+
+    @Value("${ledger.compaction.min-fill-ratio:0.5}")
+    private double minFillRatio;
+
+    private final MeterRegistry meterRegistry;
+    private final WorkerThreads workerThreads;
+
+    // Zápis a výměna segmentů – ReentrantLock nepřipíná virtuální vlákno
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Od nejstaršího po aktivní; při změně se nahradí celý seznam
+    private volatile List<LedgerSegment> segments = List.of();
+
+    private Path directory;
+    private Timer appendTimer;
+
+    public PaymentLedger(MeterRegistry meterRegistry, WorkerThreads workerThreads) {
+        this.meterRegistry = meterRegistry;
+        this.workerThreads = workerThreads;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        long startNanos = System.nanoTime();
+        directory = Path.of(dir);
+        Files.createDirectories(directory);
+        deleteLeftovers();
+
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + LedgerSegment.SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                files.put(number(file), file);
+            }
+        }
+
+        List<LedgerSegment> opened = new ArrayList<>();
+        long coveredThrough = -1;
+        for (var file : files.entrySet()) {
+            if (file.getKey() <= coveredThrough) {
+                // Zbytek po kompakci přerušené před smazáním vstupů
+                log.info("Deleting compacted ledger segment={}", file.getValue().getFileName());
+                Files.deleteIfExists(LedgerSegment.indexFile(file.getValue()));
+                Files.delete(file.getValue());
+                continue;
+            }
+            LedgerSegment segment = LedgerSegment.open(file.getValue(), file.getKey());
+            coveredThrough = segment.coversThrough();
+            opened.add(segment);
+        }
+
+        if (opened.isEmpty() || opened.get(opened.size() - 1).isSealed()) {
+            long number = opened.isEmpty() ? 1 : opened.get(opened.size() - 1).coversThrough() + 1;
+            opened.add(LedgerSegment.create(segmentFile(number), number, number, segmentBytes));
+        }
+        segments = List.copyOf(opened);
+
+        appendTimer = Timer.builder("ledger.append")
+            .description("Zápis záznamu do knihy plateb")
+            .register(meterRegistry);
+        Gauge.builder("ledger.segments", this, ledger -> ledger.segments.size())
+            .register(meterRegistry);
+        Gauge.builder("ledger.bytes", this, PaymentLedger::bytes)
+            .baseUnit("bytes")
+            .register(meterRegistry);
+
+        log.info("Payment ledger opened segments={} recoveryMs={}",
+            segments.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        warmUp();
+    }
+
+    /**
+     * Zapíše záznam. Stejnou událost (redelivery, replay) zapíše jen jednou.
+     *
+     * @return false pokud už záznam se stejným eventId existuje
+     */
+    public boolean append(LedgerEntry entry) throws IOException {
+        byte[] encoded = entry.encode();
+        if (LedgerSegment.HEADER_BYTES + LedgerSegment.RECORD_HEADER_BYTES + encoded.length > segmentBytes) {
+            throw new IllegalArgumentException("Ledger entry larger than segment eventId=" + entry.eventId());
+        }
+
+        long startNanos = System.nanoTime();
+        lock.lock();
+        try {
+            if (contains(entry)) {
+                return false;
+            }
+            LedgerSegment active = segments.get(segments.size() - 1);
+            if (!active.append(entry, encoded)) {
+                active = roll(active);
+                active.append(entry, encoded);
+            }
+            if (fsync) {
+                active.force();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+            appendTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Poslední stav platby podle událostí {@code payment_intent.*}.
+     * Rozhoduje čas události, ne pořadí doručení; konečný stav má
+     * při shodě času přednost.
+     */
+    public Optional<PaymentStatus> latestStatus(String paymentIntentId) {
+        LedgerEntry latest = null;
+        for (LedgerSegment segment : segments) {
+            for (int position : index(segment).paymentIntent(paymentIntentId)) {
+                LedgerEntry entry = segment.read(position);
+                if (entry.isPaymentIntentEvent() && (latest == null || entry.created() > latest.created()
+                        || (entry.created() == latest.created() && entry.toPaymentStatus().isTerminal()))) {
+                    latest = entry;
+                }
+            }
+        }
+        return Optional.ofNullable(latest).map(LedgerEntry::toPaymentStatus);
+    }
+
+    /**
+     * Všechny záznamy platby (platba, neúspěchy, refundace) od nejstaršího.
+     */
+    public List<LedgerEntry> paymentHistory(String paymentIntentId) {
+        List<LedgerEntry> entries = new ArrayList<>();
+        for (LedgerSegment segment : segments) {
+            for (int position : index(segment).paymentIntent(paymentIntentId)) {
+                entries.add(segment.read(position));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Nejnovější záznamy zákazníka, od nejnovějšího.
+     */
+    public List<LedgerEntry> customerHistory(String customerId, int limit) {
+        List<LedgerEntry> entries = new ArrayList<>();
+        List<LedgerSegment> current = segments;
+        for (int s = current.size() - 1; s >= 0 && entries.size() < limit; s--) {
+            LedgerSegment segment = current.get(s);
+            int[] positions = index(segment).customer(customerId);
+            for (int i = positions.length - 1; i >= 0 && entries.size() < limit; i--) {
+                entries.add(segment.read(positions[i]));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Záznamy s časem události v [from, to], seřazené podle času.
+     */
+    public List<LedgerEntry> range(Instant from, Instant to, int limit) {
+        List<LedgerEntry> entries = new ArrayList<>();
+        for (LedgerSegment segment : segments) {
+            for (int position : index(segment).range(from.getEpochSecond(), to.getEpochSecond(), limit)) {
+                entries.add(segment.read(position));
+            }
+        }
+        // Události nechodí přesně v pořadí, segmenty se časově překrývají
+        entries.sort(Comparator.comparingLong(LedgerEntry::created));
+        return entries.size() > limit ? new ArrayList<>(entries.subList(0, limit)) : entries;
+    }
+
+    /**
+     * Bez ledger.fsync se aktivní segment pravidelně vynutí na disk
+     * (namapované stránky přežijí pád procesu, ne výpadek stroje).
+     */
+    @Scheduled(fixedDelayString = "${ledger.force-interval-ms:1000}")
+    public void force() {
+        List<LedgerSegment> current = segments;
+        current.get(current.size() - 1).force();
+    }
+
+    /**
+     * Sloučí řídké uzavřené segmenty a zahodí záznamy po retenci.
+     * Uzavřené segmenty se nemění, takže přepis běží bez zámku – pod
+     * zámkem se jen vymění seznam segmentů.
+     */
+    @Scheduled(fixedDelayString = "${ledger.compaction.interval-ms:3600000}",
+               initialDelayString = "${ledger.compaction.interval-ms:3600000}")
+    public void compact() {
+        long cutoff = retentionDays > 0
+            ? Instant.now().getEpochSecond() - TimeUnit.DAYS.toSeconds(retentionDays) : Long.MIN_VALUE;
+        List<LedgerSegment> current = segments;
+        List<LedgerSegment> sealed = current.subList(0, current.size() - 1);
+
+        try {
+            List<LedgerSegment> run = new ArrayList<>();
+            long runLiveBytes = 0;
+            boolean runDropped = false;
+            for (LedgerSegment segment : sealed) {
+                long[] stats = liveStats(segment, cutoff);
+                long liveBytes = stats[0];
+                boolean dropped = stats[1] > 0;
+                boolean sparse = liveBytes < minFillRatio * segmentBytes;
+
+                if (!sparse || runLiveBytes + liveBytes > segmentBytes - LedgerSegment.HEADER_BYTES) {
+                    rewrite(run, runLiveBytes, runDropped, cutoff);
+                    run.clear();
+                    runLiveBytes = 0;
+                    runDropped = false;
+                }
+                if (sparse) {
+                    run.add(segment);
+                    runLiveBytes += liveBytes;
+                    runDropped |= dropped;
+                } else if (dropped) {
+                    rewrite(List.of(segment), liveBytes, true, cutoff);
+                }
+            }
+            rewrite(run, runLiveBytes, runDropped, cutoff);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ledger compaction failed message=\"{}\"", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        force();
+    }
+
+    /**
+     * [živé bajty, počet zahozených záznamů]
+     */
+    private static long[] liveStats(LedgerSegment segment, long cutoff) {
+        long[] stats = new long[2];
+        segment.forEach((source, position) -> {
+            if (source.created(position) >= cutoff) {
+                stats[0] += source.recordBytes(position);
+            } else {
+                stats[1]++;
+            }
+        });
+        return stats;
+    }
+
+    /**
+     * Přepíše běh uzavřených segmentů do jednoho (pod číslem prvního).
+     * Výstup se zapíše pod dočasným jménem a přejmenuje přes první vstup;
+     * ostatní vstupy se smažou až potom. Přerušenou kompakci dokončí
+     * {@link #init()} podle {@code coversThrough}.
+     */
+    private void rewrite(List<LedgerSegment> run, long liveBytes, boolean dropped, long cutoff) throws IOException {
+        if (run.isEmpty() || (run.size() == 1 && !dropped)) {
+            return;
+        }
+        LedgerSegment first = run.get(0);
+        LedgerSegment last = run.get(run.size() - 1);
+
+        LedgerSegment compacted = null;
+        if (liveBytes > 0) {
+            Path tmp = directory.resolve(SEGMENT_PREFIX + first.number() + TMP_SUFFIX + LedgerSegment.SEGMENT_SUFFIX);
+            compacted = LedgerSegment.create(tmp, first.number(), last.coversThrough(),
+                (int) (LedgerSegment.HEADER_BYTES + liveBytes));
+            LedgerSegment target = compacted;
+            for (LedgerSegment segment : run) {
+                segment.forEach((source, position) -> {
+                    if (source.created(position) >= cutoff) {
+                        target.copyFrom(source, position);
+                    }
+                });
+            }
+            compacted.seal();
+            compacted.moveTo(segmentFile(first.number()));
+        }
+
+        lock.lock();
+        try {
+            List<LedgerSegment> replaced = new ArrayList<>(segments.size());
+            for (LedgerSegment segment : segments) {
+                if (segment == first && compacted != null) {
+                    replaced.add(compacted);
+                } else if (!run.contains(segment)) {
+                    replaced.add(segment);
+                }
+            }
+            segments = List.copyOf(replaced);
+        } finally {
+            lock.unlock();
+        }
+
+        for (LedgerSegment segment : run) {
+            if (segment != first || compacted == null) {
+                segment.delete();
+            }
+        }
+        log.info("Ledger compacted segments={}..{} liveBytes={}", first.number(), last.coversThrough(), liveBytes);
+    }
+
+    /**
+     * Uzavře plný aktivní segment a založí další. Volá se pod zámkem.
+     */
+    private LedgerSegment roll(LedgerSegment active) throws IOException {
+        active.seal();
+        long number = active.coversThrough() + 1;
+        LedgerSegment next = LedgerSegment.create(segmentFile(number), number, number, segmentBytes);
+        List<LedgerSegment> rolled = new ArrayList<>(segments);
+        rolled.add(next);
+        segments = List.copyOf(rolled);
+        return next;
+    }
+
+    /**
+     * Je už v knize záznam stejné události pro stejnou platbu / zákazníka?
+     */
+    private boolean contains(LedgerEntry entry) {
+        List<LedgerSegment> current = segments;
+        for (int s = current.size() - 1; s >= 0; s--) {
+            LedgerSegment segment = current.get(s);
+            SegmentIndex index = index(segment);
+            int[] positions = entry.paymentIntentId() != null
+                ? index.paymentIntent(entry.paymentIntentId()) : index.customer(entry.customerId());
+            for (int position : positions) {
+                if (entry.eventId().equals(segment.read(position).eventId())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static SegmentIndex index(LedgerSegment segment) {
+        try {
+            return segment.index();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Načte indexy uzavřených segmentů na pozadí, od nejnovějšího.
+     */
+    private void warmUp() {
+        List<LedgerSegment> current = segments;
+        if (current.size() <= 1) {
+            return;
+        }
+        ExecutorService executor = workerThreads.fixedPool("ledger-index", 1);
+        executor.execute(() -> {
+            long startNanos = System.nanoTime();
+            for (int s = current.size() - 2; s >= 0; s--) {
+                index(current.get(s));
+            }
+            log.info("Ledger indexes loaded segments={} durationMs={}",
+                current.size() - 1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        });
+        executor.shutdown();
+    }
+
+    private long bytes() {
+        long bytes = 0;
+        for (LedgerSegment segment : segments) {
+            bytes += segment.dataEnd();
+        }
+        return bytes;
+    }
+
+    private void deleteLeftovers() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + TMP_SUFFIX + "*")) {
+            for (Path file : stream) {
+                log.info("Deleting unfinished ledger file={}", file.getFileName());
+                Files.delete(file);
+            }
+        }
+    }
+
+    private Path segmentFile(long number) {
+        return directory.resolve(SEGMENT_PREFIX + number + LedgerSegment.SEGMENT_SUFFIX);
+    }
+
+    private static long number(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - LedgerSegment.SEGMENT_SUFFIX.length()));
+    }
+}
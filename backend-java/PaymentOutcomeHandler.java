@@ -0,0 +1,75 @@
+package com.webpojede.webhook;
+
+import com.stripe.model.Event;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.StripeObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Obchodní reakce na výsledek platby (objednávka, e-maily, notifikace).
+ * Stav platby pro frontend řeší nezávisle {@link PaymentStatusHandler}.
+ *
+ * @author WebPojede
+ */
+@Component
+public class PaymentOutcomeHandler implements StripeEventHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentOutcomeHandler.class);
+
+    private static final Set<String> TYPES = Set.of(
+        "payment_intent.succeeded",
+        "payment_intent.payment_failed"
+    );
+
+    @Override
+    public Set<String> eventTypes() {
+        return TYPES;
+    }
+
+    @Override
+    public void handle(Event event, StripeObject object) {
+        PaymentIntent paymentIntent = (PaymentIntent) object;
+        if ("payment_intent.succeeded".equals(event.getType())) {
+            handlePaymentSuccess(paymentIntent);
+        } else {
+            handlePaymentFailure(paymentIntent);
+        }
+    }
+
+    /**
+     * Zpracování úspěšné platby.
+     */
+    private void handlePaymentSuccess(PaymentIntent paymentIntent) {
+        log.info("Payment succeeded paymentIntentId={} amount={} currency={} metadata={}",
+            paymentIntent.getId(), paymentIntent.getAmount(), paymentIntent.getCurrency(), paymentIntent.getMetadata());
+
+        // Záznam do knihy plateb zapisuje LedgerHandler
+
+        // TODO: Implementuj vlastní logiku
+        // - Odešli potvrzovací e-mail zákazníkovi
+        // - Aktivuj službu/produkt
+        // - Notifikuj tým (Slack, e-mail...)
+
+        // Příklad:
+        // orderService.markAsPaid(paymentIntent.getMetadata().get("orderId"));
+        // emailService.sendPaymentConfirmation(paymentIntent);
+    }
+
+    /**
+     * Zpracování neúspěšné platby.
+     */
+    private void handlePaymentFailure(PaymentIntent paymentIntent) {
+        log.warn("Payment failed paymentIntentId={} lastError=\"{}\"",
+            paymentIntent.getId(), paymentIntent.getLastPaymentError() != null
+                ? paymentIntent.getLastPaymentError().getMessage() : null);
+
+        // TODO: Implementuj vlastní logiku
+        // - Zaloguj chybu
+        // - Notifikuj zákazníka (e-mail)
+        // - Případně nabídni alternativní platební metodu
+    }
+}
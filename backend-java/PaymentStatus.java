@@ -0,0 +1,38 @@
+package com.webpojede.service;
+
+import com.stripe.model.PaymentIntent;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Snapshot stavu platby (to, co vrací /api/payment-status).
+ *
+ * @author WebPojede
+ */
+public record PaymentStatus(String id, String status, Long amount, String currency) {
+
+    public static PaymentStatus of(PaymentIntent paymentIntent) {
+        return new PaymentStatus(
+            paymentIntent.getId(),
+            paymentIntent.getStatus(),
+            paymentIntent.getAmount(),
+            paymentIntent.getCurrency());
+    }
+
+    /**
+     * Konečný stav – už se nezmění, může se cachovat dlouho.
+     */
+    public boolean isTerminal() {
+        return "succeeded".equals(status) || "canceled".equals(status);
+    }
+
+    public Map<String, Object> toResponse() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", id);
+        response.put("status", status);
+        response.put("amount", amount);
+        response.put("currency", currency);
+        return response;
+    }
+}
@@ -0,0 +1,190 @@
+package com.webpojede.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.webpojede.config.WorkerThreads;
+import com.webpojede.ledger.PaymentLedger;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Cache stavu plateb pro /api/payment-status.
+ *
+ * Konečné stavy (succeeded, canceled) se drží dlouho, rozpracované jen
+ * krátce. Po uplynutí refresh intervalu se vrátí poslední známý stav
+ * a na pozadí se načte nový (stale-while-revalidate). Webhooky
+ * {@code payment_intent.*} cache aktualizují přímo, takže po zaplacení
+ * se Stripe vůbec nevolá. Při cache miss se konečný stav nejdřív hledá
+ * v lokální {@link PaymentLedger}, Stripe se ptá až potom.
+ *
+ * @author WebPojede
+ */
+@Component
+public class PaymentStatusCache {
+
+    @Value("${payment.status.cache.max-size:50000}")
+    private long maxSize;
+
+    @Value("${payment.status.cache.terminal-ttl-minutes:1440}")
+    private long terminalTtlMinutes;
+
+    @Value("${payment.status.cache.pending-ttl-seconds:10}")
+    private long pendingTtlSeconds;
+
+    @Value("${payment.status.cache.refresh-after-seconds:2}")
+    private long refreshAfterSeconds;
+
+    @Value("${payment.status.cache.refresh-threads:8}")
+    private int refreshThreads;
+
+    private final MeterRegistry meterRegistry;
+    private final WorkerThreads workerThreads;
+    private final StripeCalls stripeCalls;
+    private final PaymentLedger ledger;
+
+    private ExecutorService executor;
+    private AsyncLoadingCache<String, PaymentStatus> cache;
+    private Counter webhookUpdates;
+    private Counter ledgerHits;
+
+    public PaymentStatusCache(MeterRegistry meterRegistry, WorkerThreads workerThreads, StripeCalls stripeCalls,
+                              PaymentLedger ledger) {
+        this.meterRegistry = meterRegistry;
+        this.workerThreads = workerThreads;
+        this.stripeCalls = stripeCalls;
+        this.ledger = ledger;
+    }
+
+    @PostConstruct
+    public void init() {
+        executor = workerThreads.ioPool("payment-status-load", refreshThreads);
+
+        long terminalTtl = Duration.ofMinutes(terminalTtlMinutes).toNanos();
+        long pendingTtl = Duration.ofSeconds(pendingTtlSeconds).toNanos();
+
+        cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfter(new Expiry<String, PaymentStatus>() {
+                @Override
+                public long expireAfterCreate(String key, PaymentStatus value, long currentTime) {
+                    return value.isTerminal() ? terminalTtl : pendingTtl;
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, PaymentStatus value, long currentTime, long currentDuration) {
+                    return value.isTerminal() ? terminalTtl : pendingTtl;
+                }
+
+                @Override
+                public long expireAfterRead(String key, PaymentStatus value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .refreshAfterWrite(Duration.ofSeconds(refreshAfterSeconds))
+            .executor(executor)
+            .recordStats()
+            .buildAsync(new StatusLoader());
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "payment.status");
+        webhookUpdates = Counter.builder("payment.status.cache.webhook.updates")
+            .description("Stavy plateb zapsané do cache přímo z webhooku")
+            .register(meterRegistry);
+        ledgerHits = Counter.builder("payment.status.cache.ledger.hits")
+            .description("Cache miss vyřízené z lokální knihy plateb")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Vrátí stav platby – z cache, nebo ze Stripe při cache miss.
+     */
+    public PaymentStatus get(String paymentIntentId) throws StripeException {
+        try {
+            return cache.get(paymentIntentId).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof StripeException stripeException) {
+                throw stripeException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Stav, pokud už je v cache načtený – bez volání Stripe.
+     *
+     * @return stav, nebo null
+     */
+    public PaymentStatus peek(String paymentIntentId) {
+        CompletableFuture<PaymentStatus> current = cache.getIfPresent(paymentIntentId);
+        return current != null && current.isDone() && !current.isCompletedExceptionally()
+            ? current.join() : null;
+    }
+
+    /**
+     * Zapíše stav z webhooku. Konečný stav se nepřepíše starší událostí.
+     */
+    public void update(PaymentStatus status) {
+        CompletableFuture<PaymentStatus> current = cache.getIfPresent(status.id());
+        if (current != null && current.isDone() && !current.isCompletedExceptionally()
+                && current.join().isTerminal() && !status.isTerminal()) {
+            return;
+        }
+        cache.put(status.id(), CompletableFuture.completedFuture(status));
+        webhookUpdates.increment();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Načítá stav z knihy plateb nebo ze Stripe. Konečné stavy se znovu nenačítají.
+     */
+    private final class StatusLoader implements AsyncCacheLoader<String, PaymentStatus> {
+
+        @Override
+        public CompletableFuture<PaymentStatus> asyncLoad(String paymentIntentId, Executor executor) {
+            // Rozpracovaný stav z knihy může být zastaralý – ten se ověří u Stripe
+            PaymentStatus recorded = ledger.latestStatus(paymentIntentId).orElse(null);
+            if (recorded != null && recorded.isTerminal()) {
+                ledgerHits.increment();
+                return CompletableFuture.completedFuture(recorded);
+            }
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return PaymentStatus.of(stripeCalls.execute("PaymentIntent.retrieve",
+                        () -> PaymentIntent.retrieve(paymentIntentId)));
+                } catch (StripeException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        }
+
+        @Override
+        public CompletableFuture<PaymentStatus> asyncReload(String paymentIntentId, PaymentStatus oldValue,
+                                                            Executor executor) {
+            if (oldValue.isTerminal()) {
+                return CompletableFuture.completedFuture(oldValue);
+            }
+            return asyncLoad(paymentIntentId, executor);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.webpojede.webhook;
+
+import com.stripe.model.Event;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.StripeObject;
+import com.webpojede.service.PaymentStatus;
+import com.webpojede.service.PaymentStatusCache;
+import com.webpojede.service.PaymentStatusStream;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Nový stav platby - /api/payment-status už nevolá Stripe a success
+ * stránka dostane změnu přes SSE.
+ *
+ * @author WebPojede
+ */
+@Component
+public class PaymentStatusHandler implements StripeEventHandler {
+
+    private static final Set<String> TYPES = Set.of(
+        "payment_intent.succeeded",
+        "payment_intent.payment_failed"
+    );
+
+    private final PaymentStatusCache paymentStatusCache;
+    private final PaymentStatusStream paymentStatusStream;
+
+    public PaymentStatusHandler(PaymentStatusCache paymentStatusCache, PaymentStatusStream paymentStatusStream) {
+        this.paymentStatusCache = paymentStatusCache;
+        this.paymentStatusStream = paymentStatusStream;
+    }
+
+    @Override
+    public Set<String> eventTypes() {
+        return TYPES;
+    }
+
+    @Override
+    public void handle(Event event, StripeObject object) {
+        PaymentStatus status = PaymentStatus.of((PaymentIntent) object);
+        paymentStatusCache.update(status);
+        paymentStatusStream.publish(status);
+    }
+}
@@ -0,0 +1,169 @@
+package com.webpojede.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Registr SSE odběrů stavu platby.
+ *
+ * Success stránka se přihlásí k odběru jednoho paymentIntentId a změnu
+ * stavu dostane ve chvíli, kdy dorazí webhook – bez pollingu. Spojení
+ * drží servlet async (SseEmitter), ne vlákno, takže nečinných spojení
+ * může být desítky tisíc. Počet spojení i doba jejich trvání jsou omezené.
+ *
+ * @author WebPojede
+ */
+@Component
+public class PaymentStatusStream {
+
+    private static final String EVENT_NAME = "status";
+
+    @Value("${payment.status.stream.max-connections:20000}")
+    private int maxConnections;
+
+    @Value("${payment.status.stream.max-per-payment:8}")
+    private int maxPerPayment;
+
+    @Value("${payment.status.stream.timeout-seconds:300}")
+    private long timeoutSeconds;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final Set<SseEmitter> active = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    public PaymentStatusStream(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("payment.status.stream.connections", connections, AtomicInteger::get)
+            .description("Otevřená SSE spojení čekající na změnu stavu platby")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Otevře odběr pro platbu a hned pošle aktuální stav. Konečný stav
+     * spojení rovnou uzavře.
+     *
+     * Webhook může stav změnit mezi přečtením {@code current} a registrací
+     * odběru – jeho {@link #publish} by nový emitter minul. Proto se po
+     * registraci stav přečte znovu z {@code latest} a případná změna se
+     * pošle hned.
+     *
+     * @param latest aktuální stav po registraci (např. z cache), může vrátit null
+     * @return emitter, nebo null pokud je dosažen limit spojení
+     */
+    public SseEmitter subscribe(PaymentStatus current, Supplier<PaymentStatus> latest) {
+        SseEmitter emitter = new SseEmitter(timeoutSeconds * 1000);
+
+        if (current.isTerminal()) {
+            send(emitter, current);
+            emitter.complete();
+            return emitter;
+        }
+
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            return null;
+        }
+        active.add(emitter);
+
+        boolean[] added = new boolean[1];
+        subscribers.compute(current.id(), (id, emitters) -> {
+            Set<SseEmitter> set = emitters != null ? emitters : ConcurrentHashMap.newKeySet();
+            if (set.size() < maxPerPayment) {
+                added[0] = set.add(emitter);
+            }
+            return set.isEmpty() ? null : set;
+        });
+        if (!added[0]) {
+            active.remove(emitter);
+            connections.decrementAndGet();
+            return null;
+        }
+
+        Runnable cleanup = () -> unsubscribe(current.id(), emitter);
+        emitter.onCompletion(cleanup);
+        emitter.onTimeout(cleanup);
+        emitter.onError(error -> cleanup.run());
+
+        send(emitter, current);
+
+        PaymentStatus after = latest.get();
+        if (after != null && !after.equals(current)) {
+            send(emitter, after);
+            if (after.isTerminal()) {
+                emitter.complete();
+            }
+        }
+        return emitter;
+    }
+
+    /**
+     * Pošle nový stav všem odběratelům dané platby.
+     */
+    public void publish(PaymentStatus status) {
+        Set<SseEmitter> emitters = status.isTerminal()
+            ? subscribers.remove(status.id())
+            : subscribers.get(status.id());
+        if (emitters == null) {
+            return;
+        }
+
+        for (SseEmitter emitter : emitters) {
+            send(emitter, status);
+            if (status.isTerminal()) {
+                emitter.complete();
+            }
+        }
+    }
+
+    /**
+     * Heartbeat, aby proxy nezavřela nečinná spojení.
+     */
+    @Scheduled(fixedDelayString = "${payment.status.stream.heartbeat-ms:20000}")
+    public void heartbeat() {
+        subscribers.values().forEach(emitters -> emitters.forEach(emitter -> {
+            try {
+                emitter.send(SseEmitter.event().comment("keep-alive"));
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        }));
+    }
+
+    private void unsubscribe(String paymentIntentId, SseEmitter emitter) {
+        // Callbacky (timeout, completion, error) se můžou zavolat vícekrát
+        if (!active.remove(emitter)) {
+            return;
+        }
+        connections.decrementAndGet();
+        subscribers.computeIfPresent(paymentIntentId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    private static void send(SseEmitter emitter, PaymentStatus status) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(status.toResponse()));
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+}
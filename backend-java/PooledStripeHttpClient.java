@@ -0,0 +1,171 @@
+package com.webpojede.config;
+
+import com.stripe.Stripe;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+import com.stripe.net.HttpClient;
+import com.stripe.net.HttpContent;
+import com.stripe.net.HttpHeaders;
+import com.stripe.net.StripeRequest;
+import com.stripe.net.StripeResponse;
+import com.stripe.net.StripeResponseStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP transport Stripe SDK nad {@link java.net.http.HttpClient}.
+ *
+ * Výchozí transport SDK ({@code HttpURLConnection}) drží jen pár keep-alive
+ * spojení, pod zátěží tedy otevírá nová a každé platí TLS handshake.
+ * Tady všechna volání sdílí jeden JDK klient s poolem spojení a HTTP/2
+ * (víc požadavků přes jedno spojení). Počet souběžných volání je omezený
+ * semaforem, read timeout se volí podle operace.
+ *
+ * Opakování při chybě dál řeší SDK ({@link HttpClient#requestWithRetries}).
+ * Plný semafor vyhodí {@link StripeConnectionLimitException}, která se
+ * neopakuje.
+ *
+ * @author WebPojede
+ */
+public class PooledStripeHttpClient extends HttpClient {
+
+    // Hlavičky, které si java.net.http nastavuje sám
+    private static final Set<String> RESTRICTED_HEADERS =
+        Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private static final String USER_AGENT = "Stripe/v1 JavaBindings/" + Stripe.VERSION;
+
+    private final java.net.http.HttpClient client;
+    private final Duration defaultReadTimeout;
+    private final Map<String, Duration> readTimeouts;
+    private final Semaphore permits;
+    private final int maxConcurrentRequests;
+    private final long acquireTimeoutMillis;
+
+    /**
+     * @param readTimeouts timeouty podle operace, klíč {@code METODA:zdroj}
+     *                     (např. {@code POST:payment_intents}) nebo jen {@code zdroj}
+     */
+    public PooledStripeHttpClient(java.net.http.HttpClient client, Duration defaultReadTimeout,
+                                  Map<String, Duration> readTimeouts, int maxConcurrentRequests,
+                                  Duration acquireTimeout) {
+        this.client = client;
+        this.defaultReadTimeout = defaultReadTimeout;
+        this.readTimeouts = Map.copyOf(readTimeouts);
+        this.permits = new Semaphore(maxConcurrentRequests);
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.acquireTimeoutMillis = acquireTimeout.toMillis();
+    }
+
+    @Override
+    public StripeResponse request(StripeRequest request) throws StripeException {
+        HttpResponse<byte[]> response = send(request, HttpResponse.BodyHandlers.ofByteArray());
+        return new StripeResponse(response.statusCode(), headers(response),
+            new String(response.body(), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public StripeResponseStream requestStream(StripeRequest request) throws StripeException {
+        HttpResponse<InputStream> response = send(request, HttpResponse.BodyHandlers.ofInputStream());
+        return new StripeResponseStream(response.statusCode(), headers(response), response.body());
+    }
+
+    /**
+     * Počet právě probíhajících volání (pro metriku).
+     */
+    public int inFlight() {
+        return maxConcurrentRequests - permits.availablePermits();
+    }
+
+    private <T> HttpResponse<T> send(StripeRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws StripeException {
+        HttpRequest httpRequest = buildRequest(request);
+        acquire(request);
+        try {
+            return client.send(httpRequest, bodyHandler);
+        } catch (IOException e) {
+            throw new ApiConnectionException(String.format(
+                "IOException during API request to Stripe (%s): %s", Stripe.getApiBase(), e.getMessage()), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiConnectionException("Interrupted during API request to Stripe", e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void acquire(StripeRequest request) throws ApiConnectionException {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new StripeConnectionLimitException(String.format(
+                    "Too many concurrent Stripe requests (limit %d), rejected %s %s",
+                    maxConcurrentRequests, request.method(), request.url().getPath()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiConnectionException("Interrupted while waiting for Stripe connection", e);
+        }
+    }
+
+    private HttpRequest buildRequest(StripeRequest request) throws ApiConnectionException {
+        HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(request.url().toURI());
+        } catch (URISyntaxException e) {
+            throw new ApiConnectionException("Invalid Stripe URL: " + request.url(), e);
+        }
+
+        builder.timeout(readTimeout(request));
+        builder.header("User-Agent", USER_AGENT);
+        for (Map.Entry<String, List<String>> header : request.headers().map().entrySet()) {
+            if (!RESTRICTED_HEADERS.contains(header.getKey().toLowerCase())) {
+                builder.header(header.getKey(), String.join(",", header.getValue()));
+            }
+        }
+
+        HttpContent content = request.content();
+        if (content != null) {
+            builder.header("Content-Type", content.contentType());
+            builder.method(request.method().name(), HttpRequest.BodyPublishers.ofByteArray(content.byteArrayContent()));
+        } else {
+            builder.method(request.method().name(), HttpRequest.BodyPublishers.noBody());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Timeout podle operace: nejdřív {@code POST:payment_intents}, pak {@code payment_intents}.
+     */
+    Duration readTimeout(StripeRequest request) {
+        String resource = resource(request.url().getPath());
+        Duration timeout = readTimeouts.get(request.method().name() + ":" + resource);
+        if (timeout == null) {
+            timeout = readTimeouts.get(resource);
+        }
+        return timeout != null ? timeout : defaultReadTimeout;
+    }
+
+    /**
+     * /v1/payment_intents/pi_123/confirm → payment_intents
+     */
+    static String resource(String path) {
+        int start = path.startsWith("/v1/") ? 4 : (path.startsWith("/") ? 1 : 0);
+        int end = path.indexOf('/', start);
+        return end < 0 ? path.substring(start) : path.substring(start, end);
+    }
+
+    private static HttpHeaders headers(HttpResponse<?> response) {
+        return HttpHeaders.of(response.headers().map());
+    }
+}
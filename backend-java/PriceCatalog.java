@@ -0,0 +1,333 @@
+package com.webpojede.service;
+
+import com.stripe.exception.StripeException;
+import com.stripe.model.Price;
+import com.stripe.model.Product;
+import com.stripe.model.StripeCollection;
+import com.stripe.param.PriceListParams;
+import com.stripe.param.ProductListParams;
+import com.webpojede.config.WorkerThreads;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lokální katalog tarifů (aktivní opakované ceny aktivních produktů).
+ *
+ * Načte se po startu, obnovuje se na pozadí a mezi obnovami ho
+ * aktualizují webhooky {@code price.*} a {@code product.*}. Dotazy čtou
+ * neměnný {@link Snapshot} z volatile pole – bez zámku a bez volání
+ * Stripe. Zápisy (webhook, obnova) postaví nový snapshot pod zámkem
+ * a vymění ho najednou.
+ *
+ * Každá cena a produkt si pamatuje čas poslední změny (čas události,
+ * u obnovy čas jejího začátku). Starší změna novější nepřepíše – webhook
+ * doručený pozdě ani obnova, která běžela souběžně s webhookem, tak
+ * nevrátí zastaralý stav. Smazané a archivované položky zůstávají jako
+ * neaktivní záznam do příští obnovy.
+ *
+ * Obnova stránkuje Stripe API a může trvat sekundy, proto běží ve vlastním
+ * vlákně – ne ve sdíleném plánovači {@code @Scheduled} úloh (checkpointy
+ * žurnálu, SSE heartbeat), které by jinak blokovala.
+ *
+ * @author WebPojede
+ */
+@Component
+public class PriceCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(PriceCatalog.class);
+
+    private static final long PAGE_SIZE = 100L;
+
+    // Prázdné = všechny aktivní produkty účtu
+    @Value("${catalog.product-ids:}")
+    private Set<String> productIds;
+
+    @Value("${catalog.refresh-interval-ms:900000}")
+    private long refreshIntervalMs;
+
+    private final StripeCalls stripeCalls;
+    private final MeterRegistry meterRegistry;
+    private final WorkerThreads workerThreads;
+
+    // Zápisy jsou vzácné – zámek jen serializuje stavbu nového snapshotu
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private ScheduledExecutorService refreshScheduler;
+    private Timer refreshLatency;
+    private Counter refreshFailures;
+
+    public PriceCatalog(StripeCalls stripeCalls, MeterRegistry meterRegistry, WorkerThreads workerThreads) {
+        this.stripeCalls = stripeCalls;
+        this.meterRegistry = meterRegistry;
+        this.workerThreads = workerThreads;
+    }
+
+    @PostConstruct
+    public void init() {
+        refreshLatency = Timer.builder("price.catalog.refresh")
+            .description("Doba načtení katalogu tarifů ze Stripe")
+            .register(meterRegistry);
+        refreshFailures = Counter.builder("price.catalog.refresh.failures").register(meterRegistry);
+        Gauge.builder("price.catalog.tariffs", this, c -> c.snapshot.tariffs().size())
+            .description("Aktivní tarify v katalogu")
+            .register(meterRegistry);
+        Gauge.builder("price.catalog.age.seconds", this,
+                c -> c.snapshot.loadedAt() == 0 ? 0 : Instant.now().getEpochSecond() - c.snapshot.loadedAt())
+            .description("Stáří posledního úplného načtení katalogu")
+            .register(meterRegistry);
+
+        refreshScheduler = Executors.newSingleThreadScheduledExecutor(workerThreads.factory("price-catalog"));
+        refreshScheduler.scheduleWithFixedDelay(this::refresh, 0, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshScheduler.shutdownNow();
+    }
+
+    /**
+     * @return tarif pro aktivní opakovanou cenu, null pokud neexistuje
+     *         nebo je archivovaná (případně katalog ještě není načtený)
+     */
+    public Tariff find(String priceId) {
+        return snapshot.tariffs().get(priceId);
+    }
+
+    /**
+     * Katalog prošel aspoň jedním úplným načtením – do té doby se cena
+     * nedá odmítnout jen proto, že v katalogu chybí.
+     */
+    public boolean isLoaded() {
+        return snapshot.loadedAt() > 0;
+    }
+
+    /**
+     * Tarify pro zobrazení, seřazené podle produktu a ceny.
+     */
+    public List<Tariff> tariffs() {
+        return snapshot.sorted();
+    }
+
+    /**
+     * Úplné načtení ze Stripe. Běží hned po startu a pak periodicky –
+     * zachytí i změny, jejichž webhook se ztratil.
+     */
+    public void refresh() {
+        long startedAt = Instant.now().getEpochSecond();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Map<String, ProductRecord> products = new HashMap<>();
+        Map<String, PriceRecord> prices = new HashMap<>();
+        try {
+            for (Product product : listProducts()) {
+                products.put(product.getId(), ProductRecord.of(product, startedAt));
+            }
+            for (Price price : listPrices()) {
+                prices.put(price.getId(), PriceRecord.of(price, startedAt));
+            }
+        } catch (StripeException | RuntimeException e) {
+            refreshFailures.increment();
+            log.warn("Price catalog refresh failed, keeping previous snapshot message=\"{}\"", e.getMessage());
+            return;
+        } finally {
+            sample.stop(refreshLatency);
+        }
+
+        writeLock.lock();
+        try {
+            Snapshot current = snapshot;
+            // Webhooky doručené během načítání jsou novější než výsledek listu
+            current.products().forEach((id, product) -> {
+                if (product.version() >= startedAt) {
+                    products.put(id, product);
+                }
+            });
+            current.prices().forEach((id, price) -> {
+                if (price.version() >= startedAt) {
+                    prices.put(id, price);
+                }
+            });
+            snapshot = build(prices, products, startedAt);
+        } finally {
+            writeLock.unlock();
+        }
+        log.info("Price catalog loaded tariffs={} prices={} products={}",
+            snapshot.tariffs().size(), prices.size(), products.size());
+    }
+
+    /**
+     * Změna ceny z webhooku ({@code price.created/updated/deleted}).
+     *
+     * @param version čas události (epoch s)
+     */
+    public void apply(Price price, boolean deleted, long version) {
+        PriceRecord record = PriceRecord.of(price, version);
+        if (deleted) {
+            record = record.deactivated();
+        }
+        writeLock.lock();
+        try {
+            Snapshot current = snapshot;
+            PriceRecord existing = current.prices().get(record.id());
+            if (existing != null && existing.version() > version) {
+                return;
+            }
+            Map<String, PriceRecord> prices = new HashMap<>(current.prices());
+            prices.put(record.id(), record);
+            snapshot = build(prices, current.products(), current.loadedAt());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Změna produktu z webhooku ({@code product.created/updated/deleted}).
+     *
+     * @param version čas události (epoch s)
+     */
+    public void apply(Product product, boolean deleted, long version) {
+        ProductRecord record = ProductRecord.of(product, version);
+        if (deleted) {
+            record = record.deactivated();
+        }
+        writeLock.lock();
+        try {
+            Snapshot current = snapshot;
+            ProductRecord existing = current.products().get(record.id());
+            if (existing != null && existing.version() > version) {
+                return;
+            }
+            Map<String, ProductRecord> products = new HashMap<>(current.products());
+            products.put(record.id(), record);
+            snapshot = build(current.prices(), products, current.loadedAt());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private Snapshot build(Map<String, PriceRecord> prices, Map<String, ProductRecord> products, long loadedAt) {
+        Map<String, Tariff> tariffs = new HashMap<>();
+        for (PriceRecord price : prices.values()) {
+            ProductRecord product = products.get(price.productId());
+            if (price.active() && price.interval() != null && product != null && product.active()
+                    && (productIds.isEmpty() || productIds.contains(product.id()))) {
+                tariffs.put(price.id(), new Tariff(price.id(), product.id(), product.name(), price.nickname(),
+                    price.lookupKey(), price.unitAmount(), price.currency(), price.interval(), price.intervalCount()));
+            }
+        }
+        List<Tariff> sorted = new ArrayList<>(tariffs.values());
+        sorted.sort(Comparator.comparing(Tariff::productName, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Tariff::unitAmount, Comparator.nullsLast(Comparator.naturalOrder())));
+        return new Snapshot(Map.copyOf(prices), Map.copyOf(products), Map.copyOf(tariffs), List.copyOf(sorted),
+            loadedAt);
+    }
+
+    private List<Product> listProducts() throws StripeException {
+        List<Product> products = new ArrayList<>();
+        String startingAfter = null;
+        StripeCollection<Product> page;
+        do {
+            ProductListParams.Builder params = ProductListParams.builder().setActive(true).setLimit(PAGE_SIZE);
+            if (startingAfter != null) {
+                params.setStartingAfter(startingAfter);
+            }
+            ProductListParams listParams = params.build();
+            page = stripeCalls.execute("Product.list", () -> Product.list(listParams));
+            products.addAll(page.getData());
+            startingAfter = page.getData().isEmpty() ? null : page.getData().get(page.getData().size() - 1).getId();
+        } while (Boolean.TRUE.equals(page.getHasMore()) && startingAfter != null);
+        return products;
+    }
+
+    private List<Price> listPrices() throws StripeException {
+        List<Price> prices = new ArrayList<>();
+        String startingAfter = null;
+        StripeCollection<Price> page;
+        do {
+            PriceListParams.Builder params = PriceListParams.builder()
+                .setActive(true)
+                .setType(PriceListParams.Type.RECURRING)
+                .setLimit(PAGE_SIZE);
+            if (startingAfter != null) {
+                params.setStartingAfter(startingAfter);
+            }
+            PriceListParams listParams = params.build();
+            page = stripeCalls.execute("Price.list", () -> Price.list(listParams));
+            prices.addAll(page.getData());
+            startingAfter = page.getData().isEmpty() ? null : page.getData().get(page.getData().size() - 1).getId();
+        } while (Boolean.TRUE.equals(page.getHasMore()) && startingAfter != null);
+        return prices;
+    }
+
+    /**
+     * Tarif pro validaci a zobrazení ceny.
+     *
+     * @param unitAmount v nejmenší jednotce měny (haléře)
+     */
+    public record Tariff(String priceId, String productId, String productName, String nickname, String lookupKey,
+                         Long unitAmount, String currency, String interval, Long intervalCount) {
+    }
+
+    /**
+     * Neměnný stav katalogu. {@code prices} a {@code products} drží i
+     * neaktivní položky (kvůli verzím), {@code tariffs} jen platné.
+     *
+     * @param loadedAt začátek posledního úplného načtení (epoch s), 0 = zatím nenačteno
+     */
+    private record Snapshot(Map<String, PriceRecord> prices, Map<String, ProductRecord> products,
+                            Map<String, Tariff> tariffs, List<Tariff> sorted, long loadedAt) {
+
+        static final Snapshot EMPTY = new Snapshot(Map.of(), Map.of(), Map.of(), List.of(), 0);
+    }
+
+    private record PriceRecord(String id, String productId, boolean active, String nickname, String lookupKey,
+                               Long unitAmount, String currency, String interval, Long intervalCount,
+                               long version) {
+
+        static PriceRecord of(Price price, long version) {
+            Price.Recurring recurring = price.getRecurring();
+            return new PriceRecord(price.getId(), price.getProduct(), Boolean.TRUE.equals(price.getActive()),
+                price.getNickname(), price.getLookupKey(), price.getUnitAmount(), price.getCurrency(),
+                recurring != null ? recurring.getInterval() : null,
+                recurring != null ? recurring.getIntervalCount() : null,
+                version);
+        }
+
+        PriceRecord deactivated() {
+            return new PriceRecord(id, productId, false, nickname, lookupKey, unitAmount, currency, interval,
+                intervalCount, version);
+        }
+    }
+
+    private record ProductRecord(String id, String name, boolean active, long version) {
+
+        static ProductRecord of(Product product, long version) {
+            return new ProductRecord(product.getId(), product.getName(), Boolean.TRUE.equals(product.getActive()),
+                version);
+        }
+
+        ProductRecord deactivated() {
+            return new ProductRecord(id, name, false, version);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.webpojede.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.Map;
+
+/**
+ * Registrace {@link RateLimitFilter} z properties {@code ratelimit.*}.
+ *
+ * Filtr běží hned po CORS filtru, takže 429 má CORS hlavičky a frontend
+ * si přečte Retry-After.
+ *
+ * @author WebPojede
+ */
+@Configuration
+@ConditionalOnProperty(name = "ratelimit.enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimitConfig {
+
+    // Cesta → počet volání Stripe, která endpoint typicky udělá
+    @Value("#{${ratelimit.costs:{'/api/create-payment-intent':1,'/api/create-subscription':3,'/api/cancel-subscription':1}}}")
+    private Map<String, Integer> costs;
+
+    @Value("${ratelimit.client.rate-per-second:0.5}")
+    private double clientRatePerSecond;
+
+    @Value("${ratelimit.client.burst:10}")
+    private int clientBurst;
+
+    @Value("${ratelimit.client.header:}")
+    private String clientHeader;
+
+    @Value("${ratelimit.client.max-keys:100000}")
+    private int clientMaxKeys;
+
+    @Value("${ratelimit.client.stripes:64}")
+    private int clientStripes;
+
+    @Value("${ratelimit.global.rate-per-second:80}")
+    private double globalRatePerSecond;
+
+    @Value("${ratelimit.global.burst:100}")
+    private int globalBurst;
+
+    private final MeterRegistry meterRegistry;
+
+    private RateLimiter clientLimiter;
+
+    public RateLimitConfig(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Společný limit volání Stripe celé instance. Sdílí ho filtr
+     * i endpointy, které volají Stripe víckrát za požadavek (hromadné rušení).
+     */
+    @Bean
+    public RateLimiter globalRateLimiter() {
+        return new RateLimiter(globalRatePerSecond, globalBurst, 1, 1);
+    }
+
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(RateLimiter globalRateLimiter) {
+        int maxCost = costs.values().stream().mapToInt(Integer::intValue).max().orElse(1);
+        if (maxCost > clientBurst || maxCost > globalBurst) {
+            throw new IllegalStateException("ratelimit burst must be at least the highest endpoint cost " + maxCost);
+        }
+
+        clientLimiter = new RateLimiter(clientRatePerSecond, clientBurst, clientStripes, clientMaxKeys);
+        Gauge.builder("ratelimit.keys", clientLimiter, RateLimiter::size)
+            .description("Sledovaní klienti v limiteru")
+            .register(meterRegistry);
+
+        RateLimitFilter filter = new RateLimitFilter(costs, clientLimiter, globalRateLimiter,
+            clientHeader.isBlank() ? null : clientHeader, meterRegistry);
+
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns(costs.keySet().toArray(String[]::new));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        return registration;
+    }
+
+    /**
+     * Úklid doplněných bucketů – paměť drží jen aktivní klienti.
+     */
+    @Scheduled(fixedDelayString = "${ratelimit.client.evict-interval-ms:60000}")
+    public void evictIdle() {
+        if (clientLimiter != null) {
+            clientLimiter.evictIdle(System.nanoTime());
+        }
+    }
+}
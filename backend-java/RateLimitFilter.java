@@ -0,0 +1,111 @@
+package com.webpojede.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Omezení rychlosti endpointů, které volají Stripe.
+ *
+ * Každý chráněný endpoint má cenu = kolik volání Stripe typicky udělá.
+ * Požadavek musí projít limitem klienta (IP, případně hlavička s ID
+ * zákazníka od proxy) a pak globálním limitem, který drží celou
+ * aplikaci pod kvótou Stripe. Odmítnutý požadavek dostane 429
+ * s Retry-After dřív, než se načte tělo nebo sáhne na SDK.
+ *
+ * @author WebPojede
+ */
+public class RateLimitFilter extends HttpFilter {
+
+    // Klíč jediného bucketu globálního limiteru
+    public static final String GLOBAL_KEY = "*";
+    private static final byte[] REJECTED_BODY =
+        "{\"error\":\"Příliš mnoho požadavků, zkus to prosím za chvíli\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final Map<String, Integer> costs;
+    private final RateLimiter clientLimiter;
+    private final RateLimiter globalLimiter;
+    private final String clientHeader;
+    private final Counter clientRejected;
+    private final Counter globalRejected;
+
+    /**
+     * @param costs cesta → cena v jednotkách limitu (volání Stripe)
+     * @param clientHeader hlavička s klíčem klienta (nastavuje ji důvěryhodná proxy), null = IP
+     */
+    public RateLimitFilter(Map<String, Integer> costs, RateLimiter clientLimiter, RateLimiter globalLimiter,
+                           String clientHeader, MeterRegistry meterRegistry) {
+        this.costs = Map.copyOf(costs);
+        this.clientLimiter = clientLimiter;
+        this.globalLimiter = globalLimiter;
+        this.clientHeader = clientHeader;
+        this.clientRejected = rejected(meterRegistry, "client");
+        this.globalRejected = rejected(meterRegistry, "global");
+    }
+
+    private static Counter rejected(MeterRegistry meterRegistry, String scope) {
+        return Counter.builder("ratelimit.rejected")
+            .description("Požadavky odmítnuté limitem (429)")
+            .tag("scope", scope)
+            .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        Integer cost = costs.get(request.getRequestURI());
+        if (cost == null || "OPTIONS".equals(request.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long now = System.nanoTime();
+        long wait = clientLimiter.tryAcquire(clientKey(request), cost, now);
+        if (wait > 0) {
+            clientRejected.increment();
+            reject(response, wait);
+            return;
+        }
+        wait = globalLimiter.tryAcquire(GLOBAL_KEY, cost, now);
+        if (wait > 0) {
+            globalRejected.increment();
+            reject(response, wait);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * Za reverzní proxy vrací getRemoteAddr() adresu klienta jen se
+     * {@code server.forward-headers-strategy=native}.
+     */
+    private String clientKey(HttpServletRequest request) {
+        if (clientHeader != null) {
+            String key = request.getHeader(clientHeader);
+            if (key != null && !key.isEmpty()) {
+                return key;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1));
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setContentLength(REJECTED_BODY.length);
+        response.getOutputStream().write(REJECTED_BODY);
+    }
+}
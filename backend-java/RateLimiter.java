@@ -0,0 +1,127 @@
+package com.webpojede.config;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket podle klíče (IP, zákazník) bez zámků.
+ *
+ * Každý bucket je jediný {@link AtomicLong} s "teoretickým časem příchodu"
+ * (GCRA): požadavek s cenou {@code n} posune čas o {@code n} intervalů
+ * a projde, pokud se tím nedostane dál než o burst před aktuální čas.
+ * Aktualizace je jeden CAS, žádný zámek ani plánovač doplňování.
+ *
+ * Klíče jsou rozdělené do stripů podle hashe, každý strip má omezený
+ * počet klíčů. Bucket, který se úplně doplnil, je k nerozeznání od
+ * nového – nečinné klíče se proto mažou bez ztráty stavu. Když je strip
+ * plný i po úklidu, nové klíče sdílí jeden přetokový bucket stripu
+ * (paměť zůstane omezená, limit se spíš zpřísní).
+ *
+ * @author WebPojede
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final int maxKeysPerStripe;
+    private final Stripe[] stripes;
+    private final int mask;
+
+    /**
+     * @param ratePerSecond průměrná rychlost (jednotek ceny za sekundu)
+     * @param burst kolik jednotek projde naráz po nečinnosti
+     * @param stripes počet stripů (zaokrouhlí se na mocninu dvou)
+     * @param maxKeys max. počet sledovaných klíčů celkem
+     */
+    public RateLimiter(double ratePerSecond, int burst, int stripes, int maxKeys) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+        this.toleranceNanos = (burst - 1) * intervalNanos;
+
+        int count = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.mask = count - 1;
+        this.maxKeysPerStripe = Math.max(1, maxKeys / count);
+    }
+
+    /**
+     * @return 0 pokud požadavek projde, jinak za kolik nanosekund by prošel
+     */
+    public long tryAcquire(String key, int cost, long nowNanos) {
+        return acquire(bucket(key, nowNanos), cost, nowNanos);
+    }
+
+    private long acquire(AtomicLong bucket, int cost, long nowNanos) {
+        long increment = cost * intervalNanos;
+        while (true) {
+            long tat = bucket.get();
+            long start = Math.max(tat, nowNanos);
+            long newTat = start + increment;
+            long wait = newTat - nowNanos - toleranceNanos - intervalNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(tat, newTat)) {
+                return 0;
+            }
+        }
+    }
+
+    private AtomicLong bucket(String key, long nowNanos) {
+        Stripe stripe = stripes[spread(key.hashCode()) & mask];
+        AtomicLong bucket = stripe.buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (stripe.buckets.size() >= maxKeysPerStripe && evictIdle(stripe, nowNanos) == 0
+                && stripe.buckets.size() >= maxKeysPerStripe) {
+            return stripe.overflow;
+        }
+        return stripe.buckets.computeIfAbsent(key, k -> new AtomicLong(nowNanos));
+    }
+
+    /**
+     * Smaže buckety, které se mezitím úplně doplnily.
+     *
+     * @return počet smazaných klíčů
+     */
+    public int evictIdle(long nowNanos) {
+        int evicted = 0;
+        for (Stripe stripe : stripes) {
+            evicted += evictIdle(stripe, nowNanos);
+        }
+        return evicted;
+    }
+
+    private static int evictIdle(Stripe stripe, long nowNanos) {
+        int before = stripe.buckets.size();
+        stripe.buckets.values().removeIf(bucket -> bucket.get() <= nowNanos);
+        return before - stripe.buckets.size();
+    }
+
+    /**
+     * Počet sledovaných klíčů.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.buckets.size();
+        }
+        return size;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Stripe {
+
+        final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        final AtomicLong overflow = new AtomicLong(System.nanoTime());
+    }
+}
@@ -0,0 +1,39 @@
+package com.webpojede.webhook;
+
+import com.stripe.model.Charge;
+import com.stripe.model.Event;
+import com.stripe.model.StripeObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Zpracování refundace.
+ *
+ * @author WebPojede
+ */
+@Component
+public class RefundHandler implements StripeEventHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(RefundHandler.class);
+
+    @Override
+    public Set<String> eventTypes() {
+        return Set.of("charge.refunded");
+    }
+
+    @Override
+    public void handle(Event event, StripeObject object) {
+        Charge charge = (Charge) object;
+        log.info("Charge refunded chargeId={} amountRefunded={}", charge.getId(), charge.getAmountRefunded());
+
+        // Záznam do knihy plateb zapisuje LedgerHandler
+
+        // TODO: Implementuj vlastní logiku
+        // - Aktualizuj stav objednávky v databázi
+        // - Odešli e-mail zákazníkovi
+        // - Deaktivuj službu pokud je to třeba
+    }
+}
@@ -0,0 +1,14 @@
+package com.webpojede.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Zapíná @Scheduled úlohy (checkpointy žurnálu, úklid cache...).
+ *
+ * @author WebPojede
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,262 @@
+package com.webpojede.ledger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * In-memory indexy jednoho segmentu knihy plateb.
+ *
+ * Pozice záznamů podle paymentIntentId a customerId (v pořadí zápisu)
+ * a časový index {@code created << 30 | pozice}. U aktivního segmentu je
+ * časový index v pořadí zápisu, při uzavření se seřadí a s ostatními
+ * indexy uloží vedle segmentu (.idx) – po restartu se uzavřené segmenty
+ * neskenují, jen se načte jejich index.
+ *
+ * @author WebPojede
+ */
+final class SegmentIndex {
+
+    private static final int MAGIC = 0x4C445849; // "LDXI"
+    private static final int POSITION_BITS = 30;
+    private static final long POSITION_MASK = (1L << POSITION_BITS) - 1;
+
+    static final int MAX_POSITION = (int) POSITION_MASK;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Positions> byPaymentIntent = new HashMap<>();
+    private final Map<String, Positions> byCustomer = new HashMap<>();
+    private long[] byTime = new long[1024];
+    private int size;
+    private boolean sorted;
+    private long minCreated = Long.MAX_VALUE;
+    private long maxCreated = Long.MIN_VALUE;
+
+    void add(int position, long created, String paymentIntentId, String customerId) {
+        lock.writeLock().lock();
+        try {
+            if (paymentIntentId != null) {
+                byPaymentIntent.computeIfAbsent(paymentIntentId, k -> new Positions()).add(position);
+            }
+            if (customerId != null) {
+                byCustomer.computeIfAbsent(customerId, k -> new Positions()).add(position);
+            }
+            if (size == byTime.length) {
+                byTime = Arrays.copyOf(byTime, size * 2);
+            }
+            byTime[size++] = (created << POSITION_BITS) | position;
+            sorted = false;
+            minCreated = Math.min(minCreated, created);
+            maxCreated = Math.max(maxCreated, created);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Pozice záznamů platby v pořadí zápisu (prázdné pole, pokud žádné nejsou).
+     */
+    int[] paymentIntent(String paymentIntentId) {
+        return positions(byPaymentIntent, paymentIntentId);
+    }
+
+    int[] customer(String customerId) {
+        return positions(byCustomer, customerId);
+    }
+
+    /**
+     * Pozice záznamů s {@code created} v intervalu [from, to], seřazené podle času.
+     */
+    int[] range(long fromSecond, long toSecond, int limit) {
+        lock.readLock().lock();
+        try {
+            if (size == 0 || toSecond < minCreated || fromSecond > maxCreated) {
+                return new int[0];
+            }
+            long from = Math.max(fromSecond, 0) << POSITION_BITS;
+            long to = (Math.min(toSecond, maxCreated) << POSITION_BITS) | POSITION_MASK;
+
+            long[] matches;
+            int count;
+            if (sorted) {
+                int start = Arrays.binarySearch(byTime, 0, size, from);
+                start = start < 0 ? -start - 1 : start;
+                int end = start;
+                while (end < size && byTime[end] <= to && end - start < limit) {
+                    end++;
+                }
+                matches = Arrays.copyOfRange(byTime, start, end);
+                count = matches.length;
+            } else {
+                // Aktivní segment – lineární průchod, velikost je omezená segmentem
+                matches = new long[64];
+                count = 0;
+                for (int i = 0; i < size; i++) {
+                    if (byTime[i] >= from && byTime[i] <= to) {
+                        if (count == matches.length) {
+                            matches = Arrays.copyOf(matches, count * 2);
+                        }
+                        matches[count++] = byTime[i];
+                    }
+                }
+                Arrays.sort(matches, 0, count);
+                count = Math.min(count, limit);
+            }
+
+            int[] positions = new int[count];
+            for (int i = 0; i < count; i++) {
+                positions[i] = (int) (matches[i] & POSITION_MASK);
+            }
+            return positions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Seřadí časový index a uloží indexy do souboru (zápis do .tmp a přejmenování).
+     *
+     * @param dataEnd konec dat segmentu – při načtení se podle něj pozná zastaralý index
+     */
+    void seal(Path file, int dataEnd, long coversThrough) throws IOException {
+        lock.writeLock().lock();
+        try {
+            Arrays.sort(byTime, 0, size);
+            sorted = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(dataEnd);
+            out.writeLong(coversThrough);
+            writePositions(out, byPaymentIntent);
+            writePositions(out, byCustomer);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(byTime[i]);
+            }
+            // CRC ze všech předchozích bajtů
+            out.writeInt((int) crc.getValue());
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Načte uložený index uzavřeného segmentu.
+     *
+     * @return null pokud soubor chybí, je poškozený nebo patří k jiné verzi segmentu
+     */
+    static SegmentIndex load(Path file, int dataEnd, long coversThrough) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        CRC32C crc = new CRC32C();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 64 * 1024), crc))) {
+            if (in.readInt() != MAGIC || in.readInt() != dataEnd || in.readLong() != coversThrough) {
+                return null;
+            }
+            SegmentIndex index = new SegmentIndex();
+            readPositions(in, index.byPaymentIntent);
+            readPositions(in, index.byCustomer);
+            index.size = in.readInt();
+            index.byTime = new long[Math.max(index.size, 1)];
+            for (int i = 0; i < index.size; i++) {
+                index.byTime[i] = in.readLong();
+            }
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected) {
+                return null;
+            }
+            index.sorted = true;
+            if (index.size > 0) {
+                index.minCreated = index.byTime[0] >>> POSITION_BITS;
+                index.maxCreated = index.byTime[index.size - 1] >>> POSITION_BITS;
+            }
+            return index;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private int[] positions(Map<String, Positions> map, String key) {
+        lock.readLock().lock();
+        try {
+            Positions positions = map.get(key);
+            return positions != null ? Arrays.copyOf(positions.values, positions.size) : new int[0];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void writePositions(DataOutputStream out, Map<String, Positions> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, Positions> entry : map.entrySet()) {
+            out.writeUTF(entry.getKey());
+            Positions positions = entry.getValue();
+            out.writeInt(positions.size);
+            for (int i = 0; i < positions.size; i++) {
+                out.writeInt(positions.values[i]);
+            }
+        }
+    }
+
+    private static void readPositions(DataInputStream in, Map<String, Positions> map) throws IOException {
+        int keys = in.readInt();
+        for (int k = 0; k < keys; k++) {
+            String key = in.readUTF();
+            Positions positions = new Positions();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                positions.add(in.readInt());
+            }
+            map.put(key, positions);
+        }
+    }
+
+    /**
+     * Rostoucí pole pozic – většina plateb má 1–3 záznamy.
+     */
+    private static final class Positions {
+
+        private int[] values = new int[2];
+        private int size;
+
+        void add(int position) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = position;
+        }
+    }
+}
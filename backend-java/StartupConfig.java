@@ -0,0 +1,29 @@
+package com.webpojede.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Měření studeného startu ({@link FirstRequestTimer}).
+ *
+ * Build pro rychlý start (Spring AOT + AppCDS) je profil
+ * {@code fast-startup} v pom.xml, viz README.
+ *
+ * @author WebPojede
+ */
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    public FilterRegistrationBean<FirstRequestTimer> firstRequestTimer(MeterRegistry meterRegistry) {
+        FilterRegistrationBean<FirstRequestTimer> registration =
+            new FilterRegistrationBean<>(new FirstRequestTimer(meterRegistry));
+        registration.addUrlPatterns("/*");
+        // Obaluje i CORS a rate limit – měří celý první požadavek
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
@@ -0,0 +1,319 @@
+package com.webpojede.service;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.RateLimitException;
+import com.stripe.exception.StripeException;
+import com.webpojede.config.StripeClientConfig;
+import com.webpojede.config.StripeConnectionLimitException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Jednotné místo pro volání Stripe SDK.
+ *
+ * Každé volání se měří timerem {@code stripe.api.calls} s tagy
+ * {@code operation} (např. PaymentIntent.create) a {@code outcome}
+ * (success nebo typ výjimky), včetně histogramu pro p99.
+ *
+ * Operace jsou rozdělené do skupin (checkout, subscription, cancel...).
+ * Každá skupina má vlastní bulkhead (limit souběžných volání) a circuit
+ * breaker, který se otevře při vysokém podílu chyb nebo pomalých volání.
+ * Když Stripe zpomalí, volání selžou hned ({@link StripeUnavailableException})
+ * místo blokování request vláken, a zrušení předplatného nevyčerpá checkout.
+ *
+ * Přechodné chyby (síť, 429, 5xx) se opakují s exponenciálním backoffem
+ * a jitterem, ale jen u operací bezpečných pro opakování a jen do výše
+ * retry budgetu (podíl z běžného provozu) – při výpadku se zátěž nenásobí.
+ *
+ * @author WebPojede
+ */
+@Component
+public class StripeCalls {
+
+    private static final String DEFAULT_GROUP = "default";
+
+    // Operace → skupina, např. {'PaymentIntent.create':'checkout'}
+    @Value("#{${stripe.resilience.operation-groups:{:}}}")
+    private Map<String, String> operationGroups;
+
+    // Skupina → max. souběžných volání
+    @Value("#{${stripe.resilience.bulkhead.max-concurrent:{:}}}")
+    private Map<String, Integer> bulkheadLimits;
+
+    @Value("${stripe.resilience.bulkhead.default-max-concurrent:50}")
+    private int defaultBulkheadLimit;
+
+    @Value("${stripe.resilience.bulkhead.max-wait-ms:20}")
+    private long bulkheadMaxWaitMs;
+
+    @Value("${stripe.resilience.circuit.failure-rate-threshold:50}")
+    private float failureRateThreshold;
+
+    @Value("${stripe.resilience.circuit.slow-call-rate-threshold:50}")
+    private float slowCallRateThreshold;
+
+    @Value("${stripe.resilience.circuit.slow-call-ms:3000}")
+    private long slowCallMs;
+
+    @Value("${stripe.resilience.circuit.window-seconds:30}")
+    private int windowSeconds;
+
+    @Value("${stripe.resilience.circuit.minimum-calls:20}")
+    private int minimumCalls;
+
+    @Value("${stripe.resilience.circuit.open-seconds:15}")
+    private long openSeconds;
+
+    @Value("${stripe.resilience.circuit.half-open-calls:5}")
+    private int halfOpenCalls;
+
+    // Zápisy jen s Idempotency-Key, jinak by opakování mohlo vytvořit duplicitu
+    @Value("${stripe.resilience.retry.operations:PaymentIntent.create,PaymentIntent.retrieve,Customer.list,Subscription.cancel,Price.list,Product.list}")
+    private Set<String> retryableOperations;
+
+    @Value("${stripe.resilience.retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${stripe.resilience.retry.base-delay-ms:100}")
+    private long baseDelayMs;
+
+    @Value("${stripe.resilience.retry.max-delay-ms:2000}")
+    private long maxDelayMs;
+
+    // Každé volání přidá do budgetu tento podíl opakování, opakování 1 odebere
+    @Value("${stripe.resilience.retry.budget-ratio:0.2}")
+    private double retryBudgetRatio;
+
+    @Value("${stripe.resilience.retry.budget-max-tokens:50}")
+    private int retryBudgetMaxTokens;
+
+    private final MeterRegistry meterRegistry;
+    private final StripeClientConfig stripeClient;
+
+    private CircuitBreakerRegistry circuitBreakers;
+    private BulkheadRegistry bulkheads;
+    private RetryBudget retryBudget;
+    private Counter retries;
+    private Counter retriesDenied;
+
+    /**
+     * @param stripeClient nastaví SDK před prvním voláním; null = SDK nastavil volající (benchmarky)
+     */
+    public StripeCalls(MeterRegistry meterRegistry, StripeClientConfig stripeClient) {
+        this.meterRegistry = meterRegistry;
+        this.stripeClient = stripeClient;
+    }
+
+    @PostConstruct
+    public void init() {
+        circuitBreakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+            .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.TIME_BASED)
+            .slidingWindowSize(windowSeconds)
+            .minimumNumberOfCalls(minimumCalls)
+            .failureRateThreshold(failureRateThreshold)
+            .slowCallRateThreshold(slowCallRateThreshold)
+            .slowCallDurationThreshold(Duration.ofMillis(slowCallMs))
+            .waitDurationInOpenState(Duration.ofSeconds(openSeconds))
+            .permittedNumberOfCallsInHalfOpenState(halfOpenCalls)
+            .automaticTransitionFromOpenToHalfOpenEnabled(true)
+            // Chyby klienta (karta zamítnuta, neplatný požadavek) nejsou výpadek Stripe
+            .recordException(StripeCalls::isTransient)
+            .build());
+        bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+            .maxConcurrentCalls(defaultBulkheadLimit)
+            .maxWaitDuration(Duration.ofMillis(bulkheadMaxWaitMs))
+            .build());
+
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakers).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheads).bindTo(meterRegistry);
+
+        retryBudget = new RetryBudget(retryBudgetRatio, retryBudgetMaxTokens);
+        retries = Counter.builder("stripe.api.retries").tag("result", "attempted")
+            .description("Opakovaná volání Stripe").register(meterRegistry);
+        retriesDenied = Counter.builder("stripe.api.retries").tag("result", "budget_exhausted")
+            .register(meterRegistry);
+        Gauge.builder("stripe.api.retry.budget", retryBudget, RetryBudget::tokens)
+            .description("Zbývající retry budget")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Provede volání Stripe přes bulkhead a circuit breaker skupiny,
+     * přechodné chyby případně zopakuje, a celé volání změří.
+     *
+     * @param operation název operace, např. "Customer.list"
+     * @throws StripeUnavailableException circuit breaker je otevřený nebo je plný bulkhead
+     */
+    public <T> T execute(String operation, StripeCall<T> call) throws StripeException {
+        if (stripeClient != null) {
+            stripeClient.ensureInitialized();
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            return executeWithRetry(operation, call);
+        } catch (StripeException | RuntimeException e) {
+            outcome = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("stripe.api.calls")
+                .description("Volání Stripe API")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        }
+    }
+
+    private <T> T executeWithRetry(String operation, StripeCall<T> call) throws StripeException {
+        String group = operationGroups.getOrDefault(operation, DEFAULT_GROUP);
+        CircuitBreaker circuitBreaker = circuitBreakers.circuitBreaker(group);
+        Bulkhead bulkhead = bulkheads.find(group)
+            .orElseGet(() -> bulkheads.bulkhead(group, bulkheadConfig(group)));
+        boolean retryable = retryableOperations.contains(operation);
+
+        retryBudget.deposit();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return attempt(operation, call, circuitBreaker, bulkhead);
+            } catch (StripeException e) {
+                if (!retryable || !isTransient(e) || attempt >= maxAttempts) {
+                    throw e;
+                }
+                if (!retryBudget.tryWithdraw()) {
+                    retriesDenied.increment();
+                    throw e;
+                }
+                retries.increment();
+                backoff(attempt, e);
+            }
+        }
+    }
+
+    private <T> T attempt(String operation, StripeCall<T> call, CircuitBreaker circuitBreaker, Bulkhead bulkhead)
+            throws StripeException {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new StripeUnavailableException(operation, "circuit breaker " + circuitBreaker.getName()
+                + " is " + circuitBreaker.getState(), Duration.ofSeconds(openSeconds), null);
+        }
+        if (!bulkhead.tryAcquirePermission()) {
+            circuitBreaker.releasePermission();
+            throw new StripeUnavailableException(operation, "bulkhead " + bulkhead.getName() + " is full",
+                Duration.ofSeconds(1), null);
+        }
+
+        long start = System.nanoTime();
+        try {
+            T result = call.execute();
+            circuitBreaker.onSuccess(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (StripeConnectionLimitException e) {
+            // Lokální odmítnutí – Stripe se nevolal, breaker ho nepočítá
+            circuitBreaker.releasePermission();
+            throw new StripeUnavailableException(operation, "HTTP connection limit reached",
+                Duration.ofSeconds(1), e);
+        } catch (StripeException | RuntimeException e) {
+            circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e);
+            throw e;
+        } finally {
+            bulkhead.onComplete();
+        }
+    }
+
+    private BulkheadConfig bulkheadConfig(String group) {
+        return BulkheadConfig.from(bulkheads.getDefaultConfig())
+            .maxConcurrentCalls(bulkheadLimits.getOrDefault(group, defaultBulkheadLimit))
+            .build();
+    }
+
+    /**
+     * Full jitter: náhodně 0 až min(max, base × 2^(pokus-1)).
+     */
+    private void backoff(int attempt, StripeException cause) throws StripeException {
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    /**
+     * Přechodná chyba, u které má smysl opakování: síť, rate limit, 5xx.
+     * Lokální odmítnutí (plný bulkhead, limit HTTP spojení) mezi ně nepatří.
+     */
+    public static boolean isTransient(Throwable e) {
+        if (e instanceof StripeConnectionLimitException || e instanceof StripeUnavailableException) {
+            return false;
+        }
+        if (e instanceof ApiConnectionException || e instanceof RateLimitException) {
+            return true;
+        }
+        return e instanceof StripeException stripeException
+            && stripeException.getStatusCode() != null && stripeException.getStatusCode() >= 500;
+    }
+
+    /**
+     * Volání Stripe SDK.
+     */
+    @FunctionalInterface
+    public interface StripeCall<T> {
+        T execute() throws StripeException;
+    }
+
+    /**
+     * Token bucket pro opakování (v tisícinách tokenu, bez zámku).
+     */
+    private static final class RetryBudget {
+
+        private final long depositMillis;
+        private final long maxMillis;
+        private final AtomicLong millis;
+
+        RetryBudget(double ratio, int maxTokens) {
+            this.depositMillis = Math.round(ratio * 1000);
+            this.maxMillis = maxTokens * 1000L;
+            this.millis = new AtomicLong(maxMillis);
+        }
+
+        void deposit() {
+            millis.accumulateAndGet(depositMillis, (current, delta) -> Math.min(maxMillis, current + delta));
+        }
+
+        boolean tryWithdraw() {
+            long current;
+            do {
+                current = millis.get();
+                if (current < 1000) {
+                    return false;
+                }
+            } while (!millis.compareAndSet(current, current - 1000));
+            return true;
+        }
+
+        double tokens() {
+            return millis.get() / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.webpojede.config;
+
+import com.stripe.Stripe;
+import com.stripe.net.ApiResource;
+import com.stripe.net.LiveStripeResponseGetter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Globální nastavení Stripe SDK: API klíč a HTTP transport.
+ *
+ * Všechna volání SDK (controllery, cache stavů, webhooky) jdou přes jeden
+ * {@link PooledStripeHttpClient} – spojení se znovu používají, TLS handshake
+ * se platí jen při otevření nového spojení.
+ *
+ * SDK se nastaví až před prvním voláním Stripe ({@link #ensureInitialized()}
+ * volá {@code StripeCalls}), start aplikace na něj nečeká. Jediné místo,
+ * kde se sahá na globální stav {@code Stripe.*}.
+ *
+ * @author WebPojede
+ */
+@Configuration
+public class StripeClientConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(StripeClientConfig.class);
+
+    @Value("${stripe.secret.key}")
+    private String stripeSecretKey;
+
+    // Jen pro zátěžové testy proti lokálnímu simulátoru (benchmark/StripeStandIn)
+    @Value("${stripe.api.base:}")
+    private String apiBase;
+
+    // true = nastavit SDK už při startu (trénovací běh AppCDS, ať se načtou i jeho třídy)
+    @Value("${stripe.init.eager:false}")
+    private boolean eager;
+
+    @Value("${stripe.http.http2:true}")
+    private boolean http2;
+
+    @Value("${stripe.http.connect-timeout-ms:3000}")
+    private long connectTimeoutMs;
+
+    @Value("${stripe.http.read-timeout-ms:30000}")
+    private long readTimeoutMs;
+
+    // Např. {'POST:payment_intents':10000,'customers':5000}
+    @Value("#{${stripe.http.read-timeouts-ms:{:}}}")
+    private Map<String, Integer> readTimeoutsMs;
+
+    @Value("${stripe.http.max-concurrent-requests:256}")
+    private int maxConcurrentRequests;
+
+    @Value("${stripe.http.acquire-timeout-ms:2000}")
+    private long acquireTimeoutMs;
+
+    @Value("${stripe.http.keepalive-seconds:300}")
+    private long keepAliveSeconds;
+
+    @Value("${stripe.http.max-network-retries:0}")
+    private int maxNetworkRetries;
+
+    @Value("${stripe.http.threads:16}")
+    private int threads;
+
+    private final WorkerThreads workerThreads;
+    private final MeterRegistry meterRegistry;
+
+    // Inicializace jen nastavuje objekty v paměti, žádné síťové I/O
+    private final ReentrantLock initLock = new ReentrantLock();
+
+    private volatile boolean initialized;
+    private ExecutorService executor;
+
+    public StripeClientConfig(WorkerThreads workerThreads, MeterRegistry meterRegistry) {
+        this.workerThreads = workerThreads;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (eager) {
+            ensureInitialized();
+        }
+    }
+
+    /**
+     * Nastaví SDK, pokud ještě není. Po inicializaci jen jedno volatile čtení.
+     */
+    public void ensureInitialized() {
+        if (initialized) {
+            return;
+        }
+        initLock.lock();
+        try {
+            if (!initialized) {
+                long startNanos = System.nanoTime();
+                initialize();
+                initialized = true;
+                log.info("Stripe SDK initialized durationMs={}",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            }
+        } finally {
+            initLock.unlock();
+        }
+    }
+
+    private void initialize() {
+        Stripe.apiKey = stripeSecretKey;
+        Stripe.setMaxNetworkRetries(maxNetworkRetries);
+        if (!apiBase.isBlank()) {
+            log.warn("Stripe API base overridden apiBase={}", apiBase);
+            Stripe.overrideApiBase(apiBase);
+        }
+
+        // Pool spojení java.net.http se nastavuje jen přes system properties
+        // a čte se při prvním použití klienta
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout", Long.toString(keepAliveSeconds));
+        }
+
+        executor = workerThreads.ioPool("stripe-http", threads);
+        HttpClient httpClient = HttpClient.newBuilder()
+            .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .executor(executor)
+            .build();
+
+        Map<String, Duration> readTimeouts = new HashMap<>();
+        readTimeoutsMs.forEach((operation, millis) -> readTimeouts.put(operation, Duration.ofMillis(millis)));
+
+        PooledStripeHttpClient stripeHttpClient = new PooledStripeHttpClient(httpClient,
+            Duration.ofMillis(readTimeoutMs), readTimeouts, maxConcurrentRequests,
+            Duration.ofMillis(acquireTimeoutMs));
+        ApiResource.setStripeResponseGetter(new LiveStripeResponseGetter(stripeHttpClient));
+
+        Gauge.builder("stripe.http.in.flight", stripeHttpClient, PooledStripeHttpClient::inFlight)
+            .description("Probíhající HTTP požadavky na Stripe")
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
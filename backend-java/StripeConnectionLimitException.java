@@ -0,0 +1,18 @@
+package com.webpojede.config;
+
+/**
+ * Lokální limit souběžných HTTP volání Stripe je vyčerpaný – požadavek
+ * se vůbec neodeslal.
+ *
+ * Záměrně to není {@code ApiConnectionException}: nejde o výpadek Stripe,
+ * takže ho neopakuje SDK ani {@code StripeCalls} a nezapočítá se do
+ * circuit breakeru (stejně jako plný bulkhead).
+ *
+ * @author WebPojede
+ */
+public class StripeConnectionLimitException extends RuntimeException {
+
+    public StripeConnectionLimitException(String message) {
+        super(message);
+    }
+}
@@ -1,17 +1,26 @@
 package com.webpojede.controller;
 
-import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
+import com.stripe.net.RequestOptions;
 import com.stripe.param.PaymentIntentCreateParams;
-import org.springframework.beans.factory.annotation.Value;
+import com.webpojede.service.IdempotencyCache;
+import com.webpojede.service.PaymentStatus;
+import com.webpojede.service.PaymentStatusCache;
+import com.webpojede.service.PaymentStatusStream;
+import com.webpojede.service.StripeCalls;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import jakarta.annotation.PostConstruct;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
 
 /**
  * Stripe Payment Controller
@@ -22,25 +31,43 @@ import java.util.Map;
  */
 @RestController
 @RequestMapping("/api")
-@CrossOrigin(origins = {"http://localhost:3000", "http://localhost:5173", "https://webpojede.cz"})
 public class StripeController {
 
-    @Value("${stripe.secret.key}")
-    private String stripeSecretKey;
+    private static final Logger log = LoggerFactory.getLogger(StripeController.class);
 
-    @PostConstruct
-    public void init() {
-        Stripe.apiKey = stripeSecretKey;
+    // Klíč od klienta jde do Stripe beze změny – Stripe bere max. 255 znaků
+    private static final Pattern IDEMPOTENCY_KEY = Pattern.compile("[A-Za-z0-9_\\-:.]{1,255}");
+
+    private final PaymentStatusCache paymentStatusCache;
+    private final PaymentStatusStream paymentStatusStream;
+    private final IdempotencyCache idempotencyCache;
+    private final StripeCalls stripeCalls;
+
+    public StripeController(PaymentStatusCache paymentStatusCache, PaymentStatusStream paymentStatusStream,
+                            IdempotencyCache idempotencyCache, StripeCalls stripeCalls) {
+        this.paymentStatusCache = paymentStatusCache;
+        this.paymentStatusStream = paymentStatusStream;
+        this.idempotencyCache = idempotencyCache;
+        this.stripeCalls = stripeCalls;
     }
 
     /**
      * Vytvoří PaymentIntent pro platbu.
      * 
+     * S hlavičkou Idempotency-Key je požadavek idempotentní: klíč se předá
+     * Stripe a výsledek se krátce drží v {@link IdempotencyCache}. Dvojklik
+     * tak nevytvoří druhou platbu. Bez hlavičky vznikne vždy nová platba
+     * (náhodný klíč jen pro opakování v rámci jednoho požadavku) – klíč
+     * odvozený z obsahu by zákazníkům za stejnou IP (NAT) sdílel clientSecret.
+     * 
      * @param request PaymentRequest obsahující amount (v haléřích) a currency
+     * @param idempotencyKey volitelný klíč od klienta (např. UUID na načtení stránky)
      * @return JSON s clientSecret pro frontend
      */
     @PostMapping("/create-payment-intent")
-    public ResponseEntity<?> createPaymentIntent(@RequestBody PaymentRequest request) {
+    public ResponseEntity<?> createPaymentIntent(
+            @RequestBody PaymentRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
             // Validace vstupů
             if (request.getAmount() == null || request.getAmount() < 100) {
@@ -49,38 +76,32 @@ public class StripeController {
                     .body(Map.of("error", "Částka musí být minimálně 100 haléřů (1 Kč)"));
             }
 
+            if (idempotencyKey != null && !IDEMPOTENCY_KEY.matcher(idempotencyKey).matches()) {
+                return ResponseEntity
+                    .badRequest()
+                    .body(Map.of("error", "Neplatná hlavička Idempotency-Key (max. 255 znaků A-Z, a-z, 0-9, _-:.)"));
+            }
+
             if (request.getCurrency() == null || request.getCurrency().isBlank()) {
                 request.setCurrency("czk"); // Default měna
             }
 
-            // Vytvoření PaymentIntent
-            PaymentIntentCreateParams params = PaymentIntentCreateParams.builder()
-                .setAmount(request.getAmount())
-                .setCurrency(request.getCurrency().toLowerCase())
-                .setDescription("WebPojede - " + (request.getDescription() != null ? request.getDescription() : "Platba za služby"))
-                // Automatická podpora platebních metod (karty, Apple Pay, Google Pay)
-                .setAutomaticPaymentMethods(
-                    PaymentIntentCreateParams.AutomaticPaymentMethods.builder()
-                        .setEnabled(true)
-                        .build()
-                )
-                // Metadata pro interní účely
-                .putMetadata("source", "webpojede-checkout")
-                .putMetadata("product", request.getProductId() != null ? request.getProductId() : "web-standard")
-                .build();
-
-            PaymentIntent paymentIntent = PaymentIntent.create(params);
-
-            // Vrátíme clientSecret pro frontend
-            Map<String, String> response = new HashMap<>();
-            response.put("clientSecret", paymentIntent.getClientSecret());
-            response.put("paymentIntentId", paymentIntent.getId());
+            if (idempotencyKey == null) {
+                return ResponseEntity.ok(createIntent(request, "wp-pi-" + UUID.randomUUID()));
+            }
+
+            String requestHash = IdempotencyCache.hash(request.getAmount(), request.getCurrency().toLowerCase(),
+                request.getDescription(), request.getProductId());
+
+            // Jiný obsah se stejným klíčem jde do Stripe (ten vrátí chybu), ne do cache
+            Map<String, String> response = idempotencyCache.execute(idempotencyKey + ":" + requestHash,
+                () -> createIntent(request, idempotencyKey));
 
             return ResponseEntity.ok(response);
 
         } catch (StripeException e) {
             // Logování chyby
-            System.err.println("Stripe error: " + e.getMessage());
+            log.error("Stripe error operation=PaymentIntent.create message=\"{}\"", e.getMessage());
             
             Map<String, String> errorResponse = new HashMap<>();
             errorResponse.put("error", "Nepodařilo se vytvořit platbu");
@@ -92,21 +113,59 @@ public class StripeController {
         }
     }
 
+    private Map<String, String> createIntent(PaymentRequest request, String idempotencyKey)
+            throws StripeException {
+        RequestOptions options = RequestOptions.builder()
+            .setIdempotencyKey(idempotencyKey)
+            .build();
+
+        PaymentIntentCreateParams params = buildPaymentIntentParams(request);
+        PaymentIntent paymentIntent = stripeCalls.execute("PaymentIntent.create",
+            () -> PaymentIntent.create(params, options));
+
+        // Vrátíme clientSecret pro frontend
+        return paymentIntentResponse(paymentIntent);
+    }
+
+    /**
+     * Parametry pro vytvoření PaymentIntent (měří i benchmark modul).
+     */
+    static PaymentIntentCreateParams buildPaymentIntentParams(PaymentRequest request) {
+        return PaymentIntentCreateParams.builder()
+            .setAmount(request.getAmount())
+            .setCurrency(request.getCurrency().toLowerCase())
+            .setDescription("WebPojede - " + (request.getDescription() != null ? request.getDescription() : "Platba za služby"))
+            // Automatická podpora platebních metod (karty, Apple Pay, Google Pay)
+            .setAutomaticPaymentMethods(
+                PaymentIntentCreateParams.AutomaticPaymentMethods.builder()
+                    .setEnabled(true)
+                    .build()
+            )
+            // Metadata pro interní účely
+            .putMetadata("source", "webpojede-checkout")
+            .putMetadata("product", request.getProductId() != null ? request.getProductId() : "web-standard")
+            .build();
+    }
+
+    static Map<String, String> paymentIntentResponse(PaymentIntent paymentIntent) {
+        Map<String, String> response = new HashMap<>();
+        response.put("clientSecret", paymentIntent.getClientSecret());
+        response.put("paymentIntentId", paymentIntent.getId());
+        return response;
+    }
+
     /**
      * Endpoint pro ověření stavu platby (volitelné).
+     * 
+     * Stav se čte z {@link PaymentStatusCache} – opakované dotazy ze success
+     * stránky nejdou do Stripe, po webhooku je stav v cache hned.
      */
     @GetMapping("/payment-status/{paymentIntentId}")
     public ResponseEntity<?> getPaymentStatus(@PathVariable String paymentIntentId) {
         try {
-            PaymentIntent paymentIntent = PaymentIntent.retrieve(paymentIntentId);
+            PaymentStatus status = paymentStatusCache.get(paymentIntentId);
             
-            Map<String, Object> response = new HashMap<>();
-            response.put("id", paymentIntent.getId());
-            response.put("status", paymentIntent.getStatus());
-            response.put("amount", paymentIntent.getAmount());
-            response.put("currency", paymentIntent.getCurrency());
-            
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(status.toResponse());
             
         } catch (StripeException e) {
             return ResponseEntity
@@ -115,6 +174,32 @@ public class StripeController {
         }
     }
 
+    /**
+     * Stream změn stavu platby (Server-Sent Events) místo pollingu.
+     * 
+     * Hned po připojení pošle aktuální stav, další změnu pošle ve chvíli,
+     * kdy dorazí webhook. Po konečném stavu se stream uzavře.
+     * 
+     * Frontend: new EventSource('/api/payment-status/' + id + '/stream')
+     *     .addEventListener('status', e => ...)
+     */
+    @GetMapping(value = "/payment-status/{paymentIntentId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamPaymentStatus(@PathVariable String paymentIntentId) {
+        PaymentStatus status;
+        try {
+            status = paymentStatusCache.get(paymentIntentId);
+        } catch (StripeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        SseEmitter emitter = paymentStatusStream.subscribe(status, () -> paymentStatusCache.peek(paymentIntentId));
+        if (emitter == null) {
+            // Limit spojení - klient může přejít na /payment-status polling
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
     /**
      * Request DTO pro vytvoření platby.
      */
@@ -0,0 +1,183 @@
+package com.webpojede.webhook;
+
+import com.stripe.model.Event;
+import com.stripe.model.EventDataObjectDeserializer;
+import com.stripe.model.StripeObject;
+import com.stripe.net.ApiResource;
+import com.webpojede.config.WorkerThreads;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stripe Event Dispatcher
+ *
+ * Registr {@link StripeEventHandler} beanů podle typu události.
+ * Volá se z worker poolu {@link WebhookIngestQueue}, ne z request vlákna.
+ *
+ * Událost typu bez handleru se nedeserializuje (controller ji potvrdí
+ * rovnou). Má-li typ víc handlerů, poslední běží na volajícím vlákně
+ * a ostatní paralelně v poolu {@code webhook-handler}; dispatch skončí,
+ * až doběhnou všechny.
+ *
+ * @author WebPojede
+ */
+@Component
+public class StripeEventDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(StripeEventDispatcher.class);
+
+    @Value("${webhook.handlers.parallelism:4}")
+    private int parallelism;
+
+    private final Map<String, List<Registered>> handlersByType;
+    private final MeterRegistry meterRegistry;
+    private final WorkerThreads workerThreads;
+
+    private ExecutorService executor;
+
+    public StripeEventDispatcher(List<StripeEventHandler> handlers, MeterRegistry meterRegistry,
+                                 WorkerThreads workerThreads) {
+        this.meterRegistry = meterRegistry;
+        this.workerThreads = workerThreads;
+
+        Map<String, List<Registered>> byType = new HashMap<>();
+        for (StripeEventHandler handler : handlers) {
+            Registered registered = new Registered(handler, Timer.builder("webhook.handler.processing")
+                .description("Zpracování události jedním handlerem")
+                .tag("handler", handler.getClass().getSimpleName())
+                .register(meterRegistry));
+            for (String type : handler.eventTypes()) {
+                byType.computeIfAbsent(type, t -> new ArrayList<>()).add(registered);
+            }
+        }
+        byType.replaceAll((type, list) -> List.copyOf(list));
+        this.handlersByType = Map.copyOf(byType);
+    }
+
+    @PostConstruct
+    public void init() {
+        executor = workerThreads.fixedPool("webhook-handler", parallelism);
+        log.info("Webhook handlers registered types={}", handlersByType.keySet());
+    }
+
+    /**
+     * Zpracovává tenhle typ události? Controller podle toho ostatní
+     * potvrdí bez žurnálu a deserializace.
+     */
+    public boolean handles(String type) {
+        return type != null && handlersByType.containsKey(type);
+    }
+
+    /**
+     * Deserializuje raw UTF-8 payload (bez mezikroku přes String) a zpracuje ho.
+     */
+    public void dispatch(byte[] payload) {
+        Event event = ApiResource.GSON.fromJson(
+            new InputStreamReader(new ByteArrayInputStream(payload), StandardCharsets.UTF_8), Event.class);
+        dispatch(event);
+    }
+
+    /**
+     * Zpracuje jednu událost a změří dobu zpracování podle typu.
+     */
+    public void dispatch(Event event) {
+        List<Registered> handlers = handlersByType.get(event.getType());
+        if (handlers == null) {
+            log.debug("Unhandled event type={} eventId={}", event.getType(), event.getId());
+            return;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            // data.object se deserializuje jen pro typy s handlerem, jednou pro všechny
+            EventDataObjectDeserializer dataObjectDeserializer = event.getDataObjectDeserializer();
+            if (dataObjectDeserializer.getObject().isEmpty()) {
+                log.warn("Unable to deserialize event data eventId={} apiVersion={}",
+                    event.getId(), event.getApiVersion());
+                return;
+            }
+            run(handlers, event, dataObjectDeserializer.getObject().get());
+        } finally {
+            sample.stop(Timer.builder("webhook.events.processing")
+                .description("Zpracování webhook události podle typu")
+                .tag("type", event.getType())
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        }
+    }
+
+    private void run(List<Registered> handlers, Event event, StripeObject object) {
+        int last = handlers.size() - 1;
+        if (last == 0) {
+            handlers.get(0).handle(event, object);
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<>(last);
+        for (int i = 0; i < last; i++) {
+            Registered handler = handlers.get(i);
+            futures.add(executor.submit(() -> handler.handle(event, object)));
+        }
+
+        // Chyba jednoho handleru nezastaví ostatní – vyhodí se až nakonec
+        RuntimeException failure = null;
+        try {
+            handlers.get(last).handle(event, object);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                RuntimeException cause = e.getCause() instanceof RuntimeException runtime
+                    ? runtime : new IllegalStateException(e.getCause());
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for webhook handlers", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Handler s vlastním timerem.
+     */
+    private record Registered(StripeEventHandler handler, Timer timer) {
+
+        void handle(Event event, StripeObject object) {
+            timer.record(() -> handler.handle(event, object));
+        }
+    }
+}
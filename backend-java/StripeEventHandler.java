@@ -0,0 +1,30 @@
+package com.webpojede.webhook;
+
+import com.stripe.model.Event;
+import com.stripe.model.StripeObject;
+
+import java.util.Set;
+
+/**
+ * Handler jednoho nebo více typů Stripe událostí.
+ *
+ * Implementace jsou Spring beany, {@link StripeEventDispatcher} si je
+ * posbírá a podle {@link #eventTypes()} sestaví registr. Typ, pro který
+ * žádný handler není, se ani nedeserializuje. Víc handlerů stejného typu
+ * na sobě nesmí záviset – běží paralelně.
+ *
+ * @author WebPojede
+ */
+public interface StripeEventHandler {
+
+    /**
+     * Typy událostí, např. {@code payment_intent.succeeded}.
+     */
+    Set<String> eventTypes();
+
+    /**
+     * @param event ověřená událost
+     * @param object deserializovaný {@code data.object} (typ odpovídá události)
+     */
+    void handle(Event event, StripeObject object);
+}
@@ -0,0 +1,29 @@
+package com.webpojede.service;
+
+import java.time.Duration;
+
+/**
+ * Volání Stripe se neprovedlo – circuit breaker je otevřený nebo je plný
+ * bulkhead dané skupiny operací. Controller vrátí 503 s Retry-After.
+ *
+ * @author WebPojede
+ */
+public class StripeUnavailableException extends RuntimeException {
+
+    private final String operation;
+    private final Duration retryAfter;
+
+    public StripeUnavailableException(String operation, String reason, Duration retryAfter, Throwable cause) {
+        super("Stripe call " + operation + " rejected: " + reason, cause);
+        this.operation = operation;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
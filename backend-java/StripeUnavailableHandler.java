@@ -0,0 +1,32 @@
+package com.webpojede.controller;
+
+import com.webpojede.service.StripeUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Map;
+
+/**
+ * Odmítnuté volání Stripe (otevřený circuit breaker, plný bulkhead)
+ * → 503 s Retry-After, ve všech controllerech stejně.
+ *
+ * @author WebPojede
+ */
+@RestControllerAdvice
+public class StripeUnavailableHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(StripeUnavailableHandler.class);
+
+    @ExceptionHandler(StripeUnavailableException.class)
+    public ResponseEntity<Map<String, String>> handle(StripeUnavailableException e) {
+        log.warn("Stripe call rejected operation={} message=\"{}\"", e.getOperation(), e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, e.getRetryAfter().toSeconds())))
+            .body(Map.of("error", "Platební brána je dočasně nedostupná, zkus to prosím za chvíli"));
+    }
+}
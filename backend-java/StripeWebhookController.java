@@ -1,149 +1,166 @@
 package com.webpojede.controller;
 
-import com.stripe.Stripe;
 import com.stripe.exception.SignatureVerificationException;
-import com.stripe.model.*;
-import com.stripe.net.Webhook;
+import com.webpojede.webhook.EventEnvelope;
+import com.webpojede.webhook.StripeEventDispatcher;
+import com.webpojede.webhook.WebhookBodyPool;
+import com.webpojede.webhook.WebhookDeduplicator;
+import com.webpojede.webhook.WebhookIngestQueue;
+import com.webpojede.webhook.WebhookSignature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
 /**
  * Stripe Webhook Controller
- * 
+ *
  * Endpoint pro zpracování Stripe webhooků.
  * Nastavení v Stripe Dashboard: https://dashboard.stripe.com/webhooks
- * 
+ *
+ * Request vlákno jen ověří podpis a předá událost do {@link WebhookIngestQueue},
+ * samotné zpracování dělá {@link StripeEventDispatcher}.
+ *
+ * Tělo se čte jednou do bufferu z {@link WebhookBodyPool} a vše další
+ * (podpis, id/typ, žurnál) pracuje nad těmi bajty. Události typů, které
+ * dispatcher nezpracovává, se potvrdí bez žurnálu a deserializace.
+ *
  * @author WebPojede
  */
 @RestController
 @RequestMapping("/api/webhooks")
 public class StripeWebhookController {
 
+    private static final Logger log = LoggerFactory.getLogger(StripeWebhookController.class);
+
     @Value("${stripe.webhook.secret}")
     private String webhookSecret;
 
+    // Max. stáří razítka v Stripe-Signature (výchozí hodnota SDK)
+    @Value("${stripe.webhook.tolerance-seconds:300}")
+    private long toleranceSeconds;
+
+    @Value("${webhook.body.max-bytes:1048576}")
+    private int maxBodyBytes;
+
+    @Value("${webhook.body.pool-size:64}")
+    private int bodyPoolSize;
+
+    @Value("${webhook.body.initial-bytes:16384}")
+    private int bodyInitialBytes;
+
+    @Value("${webhook.body.max-pooled-bytes:262144}")
+    private int bodyMaxPooledBytes;
+
+    private final WebhookIngestQueue ingestQueue;
+    private final WebhookDeduplicator deduplicator;
+    private final StripeEventDispatcher dispatcher;
+    private final MeterRegistry meterRegistry;
+
+    private WebhookBodyPool bodyPool;
+    private WebhookSignature signature;
+    private Counter ignored;
+
+    public StripeWebhookController(WebhookIngestQueue ingestQueue, WebhookDeduplicator deduplicator,
+                                   StripeEventDispatcher dispatcher, MeterRegistry meterRegistry) {
+        this.ingestQueue = ingestQueue;
+        this.deduplicator = deduplicator;
+        this.dispatcher = dispatcher;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        bodyPool = new WebhookBodyPool(bodyPoolSize, bodyInitialBytes, bodyMaxPooledBytes);
+        signature = new WebhookSignature(webhookSecret, toleranceSeconds);
+        ignored = Counter.builder("webhook.events.ignored")
+            .description("Ověřené události typů, které se nezpracovávají")
+            .register(meterRegistry);
+    }
+
     /**
      * Zpracuje Stripe webhook události.
-     * 
+     *
      * URL pro nastavení v Stripe: https://yourdomain.com/api/webhooks/stripe
-     * 
-     * @param payload Raw JSON payload
+     *
+     * @param request raw request – tělo se čte přímo ze streamu
      * @param sigHeader Stripe-Signature header
-     * @return HTTP 200 pro potvrzení přijetí
+     * @return HTTP 200 pro potvrzení přijetí (i duplicity), 503 pokud je fronta plná
      */
     @PostMapping("/stripe")
     public ResponseEntity<String> handleStripeWebhook(
-            @RequestBody String payload,
-            @RequestHeader("Stripe-Signature") String sigHeader) {
-        
-        Event event;
-        
+            HttpServletRequest request,
+            @RequestHeader("Stripe-Signature") String sigHeader) throws IOException {
+
+        long startNanos = System.nanoTime();
+
+        WebhookBodyPool.Body body = bodyPool.acquire();
         try {
-            // Ověření podpisu webhooku - KRITICKÉ pro bezpečnost!
-            event = Webhook.constructEvent(payload, sigHeader, webhookSecret);
-        } catch (SignatureVerificationException e) {
-            System.err.println("⚠️ Webhook signature verification failed: " + e.getMessage());
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid signature");
-        }
+            if (!body.readFrom(request.getInputStream(), maxBodyBytes)) {
+                return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body("Payload too large");
+            }
 
-        // Zpracování události podle typu
-        EventDataObjectDeserializer dataObjectDeserializer = event.getDataObjectDeserializer();
-        StripeObject stripeObject = null;
-        
-        if (dataObjectDeserializer.getObject().isPresent()) {
-            stripeObject = dataObjectDeserializer.getObject().get();
-        } else {
-            System.err.println("⚠️ Unable to deserialize event data");
-            return ResponseEntity.ok("Event received but not processed");
-        }
+            try {
+                // Ověření podpisu webhooku - KRITICKÉ pro bezpečnost!
+                signature.verify(sigHeader, body.array(), body.length());
+            } catch (SignatureVerificationException e) {
+                log.warn("Webhook signature verification failed message=\"{}\"", e.getMessage());
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid signature");
+            }
 
-        // Zpracování různých typů událostí
-        switch (event.getType()) {
-            case "payment_intent.succeeded":
-                PaymentIntent paymentIntent = (PaymentIntent) stripeObject;
-                handlePaymentSuccess(paymentIntent);
-                break;
-                
-            case "payment_intent.payment_failed":
-                PaymentIntent failedPayment = (PaymentIntent) stripeObject;
-                handlePaymentFailure(failedPayment);
-                break;
-                
-            case "charge.refunded":
-                Charge refundedCharge = (Charge) stripeObject;
-                handleRefund(refundedCharge);
-                break;
-                
-            case "customer.created":
-                Customer customer = (Customer) stripeObject;
-                handleNewCustomer(customer);
-                break;
-                
-            default:
-                System.out.println("ℹ️ Unhandled event type: " + event.getType());
-        }
+            EventEnvelope envelope;
+            try {
+                envelope = EventEnvelope.peek(body.array(), body.length());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid payload");
+            }
 
-        return ResponseEntity.ok("Webhook processed");
-    }
+            if (!dispatcher.handles(envelope.type())) {
+                ignored.increment();
+                log.debug("Ignoring webhook type={} eventId={}", envelope.type(), envelope.id());
+                return ResponseEntity.ok("Event type ignored");
+            }
 
-    /**
-     * Zpracování úspěšné platby.
-     */
-    private void handlePaymentSuccess(PaymentIntent paymentIntent) {
-        System.out.println("✅ Payment succeeded!");
-        System.out.println("   Payment Intent ID: " + paymentIntent.getId());
-        System.out.println("   Amount: " + paymentIntent.getAmount() + " " + paymentIntent.getCurrency());
-        System.out.println("   Metadata: " + paymentIntent.getMetadata());
-        
-        // TODO: Implementuj vlastní logiku
-        // - Ulož platbu do databáze
-        // - Odešli potvrzovací e-mail zákazníkovi
-        // - Aktivuj službu/produkt
-        // - Notifikuj tým (Slack, e-mail...)
-        
-        // Příklad:
-        // orderService.markAsPaid(paymentIntent.getMetadata().get("orderId"));
-        // emailService.sendPaymentConfirmation(paymentIntent);
-    }
+            // Stripe doručuje "at-least-once" - duplicity potvrdíme bez zpracování
+            String eventId = envelope.id();
+            if (eventId != null && !deduplicator.markIfAbsent(eventId)) {
+                return ResponseEntity.ok("Duplicate event ignored");
+            }
 
-    /**
-     * Zpracování neúspěšné platby.
-     */
-    private void handlePaymentFailure(PaymentIntent paymentIntent) {
-        System.out.println("❌ Payment failed!");
-        System.out.println("   Payment Intent ID: " + paymentIntent.getId());
-        System.out.println("   Last error: " + paymentIntent.getLastPaymentError());
-        
-        // TODO: Implementuj vlastní logiku
-        // - Zaloguj chybu
-        // - Notifikuj zákazníka (e-mail)
-        // - Případně nabídni alternativní platební metodu
-    }
+            // Zpracování proběhne asynchronně - Stripe dostane odpověď hned
+            try {
+                if (!ingestQueue.offer(body.array(), body.length())) {
+                    // Plná fronta - Stripe událost doručí znovu později
+                    forget(eventId);
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Webhook queue full");
+                }
+            } catch (IOException e) {
+                log.error("Unable to journal webhook eventId={} message=\"{}\"", eventId, e.getMessage());
+                forget(eventId);
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Webhook not accepted");
+            }
+        } finally {
+            bodyPool.release(body);
+        }
 
-    /**
-     * Zpracování refundace.
-     */
-    private void handleRefund(Charge charge) {
-        System.out.println("💸 Charge refunded!");
-        System.out.println("   Charge ID: " + charge.getId());
-        System.out.println("   Amount refunded: " + charge.getAmountRefunded());
-        
-        // TODO: Implementuj vlastní logiku
-        // - Aktualizuj stav objednávky v databázi
-        // - Odešli e-mail zákazníkovi
-        // - Deaktivuj službu pokud je to třeba
+        ingestQueue.recordAck(startNanos);
+        return ResponseEntity.ok("Webhook accepted");
     }
 
     /**
-     * Zpracování nového zákazníka.
+     * Nepřijatou událost musí jít doručit znovu.
      */
-    private void handleNewCustomer(Customer customer) {
-        System.out.println("👤 New customer created!");
-        System.out.println("   Customer ID: " + customer.getId());
-        System.out.println("   Email: " + customer.getEmail());
-        
-        // TODO: Ulož zákazníka do vlastní databáze
+    private void forget(String eventId) {
+        if (eventId != null) {
+            deduplicator.forget(eventId);
+        }
     }
 }
@@ -1,6 +1,5 @@
 package com.webpojede.controller;
 
-import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Customer;
 import com.stripe.model.Invoice;
@@ -9,31 +8,104 @@ import com.stripe.model.Subscription;
 import com.stripe.param.CustomerCreateParams;
 import com.stripe.param.CustomerListParams;
 import com.stripe.param.SubscriptionCreateParams;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.webpojede.config.RateLimitFilter;
+import com.webpojede.config.RateLimiter;
+import com.webpojede.config.WorkerThreads;
+import com.webpojede.service.CustomerCache;
+import com.webpojede.service.PriceCatalog;
+import com.webpojede.service.StripeCalls;
+import com.webpojede.service.StripeUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Stripe Subscription Controller
  * 
  * Endpoint pro vytvoření měsíčního předplatného.
+ * Cena se ověří proti lokálnímu {@link PriceCatalog}.
+ * Rušení jednotlivě i hromadně (streamovaný výsledek po položkách).
  */
 @RestController
 @RequestMapping("/api")
-@CrossOrigin(origins = {"http://localhost:3000", "http://localhost:5173", "https://webpojede.cz"})
 public class SubscriptionController {
 
-    @Value("${stripe.secret.key}")
-    private String stripeSecretKey;
+    private static final Logger log = LoggerFactory.getLogger(SubscriptionController.class);
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String BEARER = "Bearer ";
+
+    @Value("${subscription.batch.admin-token:}")
+    private String batchAdminToken;
+
+    @Value("${subscription.batch.max-size:500}")
+    private int batchMaxSize;
+
+    @Value("${subscription.batch.parallelism:8}")
+    private int batchParallelism;
+
+    @Value("${subscription.batch.rate-limit-max-wait-ms:30000}")
+    private long batchRateLimitMaxWaitMs;
+
+    private final CustomerCache customerCache;
+    private final PriceCatalog priceCatalog;
+    private final StripeCalls stripeCalls;
+    private final ObjectMapper objectMapper;
+    private final WorkerThreads workerThreads;
+    // Globální limit z RateLimitConfig (null, když je rate limit vypnutý)
+    private final RateLimiter globalRateLimiter;
+
+    private ExecutorService batchExecutor;
+    private final Counter unknownPrices;
+
+    public SubscriptionController(CustomerCache customerCache, PriceCatalog priceCatalog, StripeCalls stripeCalls,
+                                  ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                  WorkerThreads workerThreads, ObjectProvider<RateLimiter> globalRateLimiter) {
+        this.customerCache = customerCache;
+        this.priceCatalog = priceCatalog;
+        this.stripeCalls = stripeCalls;
+        this.objectMapper = objectMapper;
+        this.workerThreads = workerThreads;
+        this.globalRateLimiter = globalRateLimiter.getIfAvailable();
+        this.unknownPrices = Counter.builder("subscription.price.rejected")
+            .description("Předplatné odmítnuté lokálně – cena není v katalogu")
+            .register(meterRegistry);
+    }
 
     @PostConstruct
     public void init() {
-        Stripe.apiKey = stripeSecretKey;
+        batchExecutor = workerThreads.ioPool("subscription-batch", batchParallelism);
     }
 
     /**
@@ -49,17 +121,22 @@ public class SubscriptionController {
             if (request.getPriceId() == null || request.getPriceId().isBlank()) {
                 return ResponseEntity.badRequest().body(Map.of("error", "Chybí Price ID"));
             }
+            // Neplatná nebo archivovaná cena se odmítne bez volání Stripe.
+            // Dokud se katalog nenačetl, rozhodne až Subscription.create.
+            if (priceCatalog.isLoaded() && priceCatalog.find(request.getPriceId()) == null) {
+                unknownPrices.increment();
+                return ResponseEntity.badRequest().body(Map.of("error", "Neplatný nebo neaktivní tarif"));
+            }
 
-            // 1. Najdi nebo vytvoř zákazníka
-            String email = request.getEmail() != null && !request.getEmail().isBlank() 
-                ? request.getEmail() 
-                : "customer_" + System.currentTimeMillis() + "@webpojede.cz";
-            
-            Customer customer = findOrCreateCustomer(email);
+            // 1. Najdi nebo vytvoř zákazníka. Vygenerovaný e-mail je vždy nový
+            // zákazník – do cache ani Customer.list nepatří.
+            String customerId = request.getEmail() != null && !request.getEmail().isBlank()
+                ? findOrCreateCustomer(request.getEmail())
+                : createCustomer(CustomerCache.anonymousEmail());
 
             // 2. Vytvoř subscription s incomplete status
             SubscriptionCreateParams subscriptionParams = SubscriptionCreateParams.builder()
-                .setCustomer(customer.getId())
+                .setCustomer(customerId)
                 .addItem(SubscriptionCreateParams.Item.builder()
                     .setPrice(request.getPriceId())
                     .build())
@@ -72,7 +149,8 @@ public class SubscriptionController {
                 .putMetadata("source", "webpojede-checkout")
                 .build();
 
-            Subscription subscription = Subscription.create(subscriptionParams);
+            Subscription subscription = stripeCalls.execute("Subscription.create",
+                () -> Subscription.create(subscriptionParams));
 
             // 3. Získej clientSecret z payment_intent
             Invoice invoice = subscription.getLatestInvoiceObject();
@@ -86,40 +164,60 @@ public class SubscriptionController {
             Map<String, String> response = new HashMap<>();
             response.put("clientSecret", paymentIntent.getClientSecret());
             response.put("subscriptionId", subscription.getId());
-            response.put("customerId", customer.getId());
+            response.put("customerId", customerId);
 
             return ResponseEntity.ok(response);
 
         } catch (StripeException e) {
-            System.err.println("Stripe error: " + e.getMessage());
+            log.error("Stripe error operation=create-subscription message=\"{}\"", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", "Chyba při vytváření předplatného", "message", e.getMessage()));
         }
     }
 
+    /**
+     * Aktivní tarify pro zobrazení cen – z lokálního katalogu, bez volání Stripe.
+     */
+    @GetMapping("/prices")
+    public ResponseEntity<List<PriceCatalog.Tariff>> prices() {
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.maxAge(Duration.ofMinutes(1)).cachePublic())
+            .body(priceCatalog.tariffs());
+    }
+
     /**
      * Najde existujícího zákazníka nebo vytvoří nového.
+     * 
+     * Výsledek se drží v {@link CustomerCache}, opakovaný checkout se stejným
+     * e-mailem už Stripe nevolá.
      */
-    private Customer findOrCreateCustomer(String email) throws StripeException {
+    private String findOrCreateCustomer(String email) throws StripeException {
+        return customerCache.get(email, this::lookupOrCreateCustomer);
+    }
+
+    private String lookupOrCreateCustomer(String email) throws StripeException {
         // Hledej existujícího
         CustomerListParams listParams = CustomerListParams.builder()
             .setEmail(email)
             .setLimit(1L)
             .build();
         
-        var customers = Customer.list(listParams);
+        var customers = stripeCalls.execute("Customer.list", () -> Customer.list(listParams));
         
         if (!customers.getData().isEmpty()) {
-            return customers.getData().get(0);
+            return customers.getData().get(0).getId();
         }
 
-        // Vytvoř nového
+        return createCustomer(email);
+    }
+
+    private String createCustomer(String email) throws StripeException {
         CustomerCreateParams createParams = CustomerCreateParams.builder()
             .setEmail(email)
             .putMetadata("source", "webpojede-checkout")
             .build();
 
-        return Customer.create(createParams);
+        return stripeCalls.execute("Customer.create", () -> Customer.create(createParams)).getId();
     }
 
     /**
@@ -134,8 +232,7 @@ public class SubscriptionController {
                 return ResponseEntity.badRequest().body(Map.of("error", "Chybí ID předplatného"));
             }
 
-            Subscription subscription = Subscription.retrieve(subscriptionId);
-            Subscription canceledSubscription = subscription.cancel();
+            Subscription canceledSubscription = cancel(subscriptionId);
 
             return ResponseEntity.ok(Map.of(
                 "status", canceledSubscription.getStatus(),
@@ -148,6 +245,198 @@ public class SubscriptionController {
         }
     }
 
+    /**
+     * Hromadné zrušení předplatných (offboarding klienta, skripty provozu).
+     *
+     * Rušení běží souběžně (nejvýš {@code subscription.batch.parallelism}
+     * najednou) a výsledky se streamují jako NDJSON v pořadí dokončení –
+     * jeden řádek na předplatné, chyba jednoho dávku nepřeruší. Poslední
+     * řádek je souhrn. Každé rušení si bere token z globálního rate limitu
+     * (filtr počítá za celou dávku jen jeden). Vyžaduje {@code Authorization: Bearer <subscription.batch.admin-token>}.
+     *
+     * curl -N -H "Authorization: Bearer $TOKEN" -H "Content-Type: application/json" \
+     *      -d '{"subscriptionIds":["sub_1","sub_2"]}' localhost:8080/api/subscriptions/cancel-batch
+     */
+    @PostMapping("/subscriptions/cancel-batch")
+    public ResponseEntity<?> cancelSubscriptions(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            @RequestBody BatchCancelRequest request) {
+
+        if (!isBatchAuthorized(authorization)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("error", "Hromadné rušení není povolené"));
+        }
+
+        Set<String> subscriptionIds = new LinkedHashSet<>();
+        if (request.getSubscriptionIds() != null) {
+            for (String id : request.getSubscriptionIds()) {
+                if (id != null && !id.isBlank()) {
+                    subscriptionIds.add(id.trim());
+                }
+            }
+        }
+        if (subscriptionIds.isEmpty() || subscriptionIds.size() > batchMaxSize) {
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("error", "Počet ID předplatných musí být 1 až " + batchMaxSize));
+        }
+
+        StreamingResponseBody body = out -> streamCancellations(List.copyOf(subscriptionIds), out);
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    /**
+     * Drží nejvýš {@code batchParallelism} rozběhnutých rušení – další se
+     * spustí, až se jedno dokončí a jeho výsledek se zapíše.
+     */
+    private void streamCancellations(List<String> subscriptionIds, OutputStream out) throws IOException {
+        CompletionService<CancelResult> completion = new ExecutorCompletionService<>(batchExecutor);
+        Iterator<String> pending = subscriptionIds.iterator();
+        int inFlight = 0;
+        int canceled = 0;
+        int failed = 0;
+
+        while (inFlight < batchParallelism && pending.hasNext()) {
+            String id = pending.next();
+            completion.submit(() -> cancelForBatch(id));
+            inFlight++;
+        }
+
+        try {
+            while (inFlight > 0) {
+                CancelResult result = completion.take().get();
+                inFlight--;
+                if (result.error() == null) {
+                    canceled++;
+                } else {
+                    failed++;
+                }
+                writeLine(out, result);
+
+                if (pending.hasNext()) {
+                    String id = pending.next();
+                    completion.submit(() -> cancelForBatch(id));
+                    inFlight++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Batch cancel interrupted canceled={} failed={}", canceled, failed);
+            return;
+        } catch (ExecutionException e) {
+            // cancelForBatch chyby nevyhazuje
+            throw new IllegalStateException(e.getCause());
+        } catch (IOException e) {
+            // Klient odešel – rozběhnutá rušení doběhnou, další se nespustí
+            log.warn("Batch cancel client disconnected canceled={} failed={} notStarted={}",
+                canceled, failed, subscriptionIds.size() - canceled - failed - inFlight);
+            throw e;
+        }
+
+        log.info("Batch cancel finished requested={} canceled={} failed={}",
+            subscriptionIds.size(), canceled, failed);
+        writeLine(out, Map.of("done", true, "requested", subscriptionIds.size(),
+            "canceled", canceled, "failed", failed));
+    }
+
+    private CancelResult cancelForBatch(String subscriptionId) {
+        try {
+            if (!awaitGlobalLimit()) {
+                return new CancelResult(subscriptionId, null, null, "Překročen limit volání Stripe",
+                    "rate_limited", true);
+            }
+            Subscription subscription = cancel(subscriptionId);
+            return new CancelResult(subscriptionId, subscription.getStatus(), subscription.getCanceledAt(),
+                null, null, null);
+        } catch (StripeUnavailableException e) {
+            return new CancelResult(subscriptionId, null, null, e.getMessage(), "unavailable", true);
+        } catch (StripeException e) {
+            log.warn("Batch cancel failed subscriptionId={} code={} message=\"{}\"",
+                subscriptionId, e.getCode(), e.getMessage());
+            return new CancelResult(subscriptionId, null, null,
+                e.getStripeError() != null ? e.getStripeError().getMessage() : e.getMessage(),
+                e.getCode(), StripeCalls.isTransient(e));
+        } catch (RuntimeException e) {
+            log.error("Batch cancel failed subscriptionId={}", subscriptionId, e);
+            return new CancelResult(subscriptionId, null, null, "Interní chyba", "internal", false);
+        }
+    }
+
+    /**
+     * Počká na token globálního limiteru, nejdéle {@code batchRateLimitMaxWaitMs}.
+     *
+     * @return false pokud by čekání trvalo déle (nebo bylo přerušeno)
+     */
+    private boolean awaitGlobalLimit() {
+        if (globalRateLimiter == null) {
+            return true;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchRateLimitMaxWaitMs);
+        while (true) {
+            long now = System.nanoTime();
+            long wait = globalRateLimiter.tryAcquire(RateLimitFilter.GLOBAL_KEY, 1, now);
+            if (wait == 0) {
+                return true;
+            }
+            if (now + wait > deadline) {
+                return false;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Zrušení bez předchozího retrieve – stačí ID (DELETE /v1/subscriptions/{id}).
+     */
+    private Subscription cancel(String subscriptionId) throws StripeException {
+        Subscription subscription = new Subscription();
+        subscription.setId(subscriptionId);
+        return stripeCalls.execute("Subscription.cancel", subscription::cancel);
+    }
+
+    private boolean isBatchAuthorized(String authorization) {
+        if (batchAdminToken.isBlank() || authorization == null || !authorization.startsWith(BEARER)) {
+            return false;
+        }
+        return MessageDigest.isEqual(
+            batchAdminToken.getBytes(StandardCharsets.UTF_8),
+            authorization.substring(BEARER.length()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeLine(OutputStream out, Object value) throws IOException {
+        // writeValue(out) by stream po zápisu zavřel
+        out.write(objectMapper.writeValueAsBytes(value));
+        out.write('\n');
+        out.flush();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batchExecutor.shutdown();
+    }
+
+    /**
+     * Výsledek zrušení jednoho předplatného (řádek NDJSON).
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record CancelResult(String subscriptionId, String status, Long canceledAt,
+                               String error, String code, Boolean retryable) {
+    }
+
+    /**
+     * Request DTO pro hromadné zrušení.
+     */
+    public static class BatchCancelRequest {
+        private List<String> subscriptionIds;
+
+        public List<String> getSubscriptionIds() { return subscriptionIds; }
+        public void setSubscriptionIds(List<String> subscriptionIds) { this.subscriptionIds = subscriptionIds; }
+    }
+
     /**
      * Request DTO
      */
@@ -0,0 +1,93 @@
+package com.webpojede.webhook;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool bufferů pro raw tělo webhooku.
+ *
+ * Tělo se načte jednou do znovupoužitelného {@code byte[]}, nad těmi
+ * bajty se ověří podpis, přečte hlavička události a zapíše žurnál.
+ * Buffer větší než {@code maxPooledBytes} se po použití zahodí, aby
+ * jeden obří payload nedržel paměť navždy.
+ *
+ * @author WebPojede
+ */
+public class WebhookBodyPool {
+
+    private final BlockingQueue<Body> pool;
+    private final int initialBytes;
+    private final int maxPooledBytes;
+
+    public WebhookBodyPool(int maxPooled, int initialBytes, int maxPooledBytes) {
+        this.pool = new ArrayBlockingQueue<>(maxPooled);
+        this.initialBytes = initialBytes;
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    public Body acquire() {
+        Body body = pool.poll();
+        return body != null ? body : new Body(initialBytes);
+    }
+
+    public void release(Body body) {
+        if (body.array.length <= maxPooledBytes) {
+            body.length = 0;
+            pool.offer(body);
+        }
+    }
+
+    /**
+     * Buffer s načteným tělem – platné jsou bajty {@code [0, length)}.
+     */
+    public static final class Body {
+
+        private byte[] array;
+        private int length;
+
+        Body(int capacity) {
+            this.array = new byte[capacity];
+        }
+
+        /**
+         * Načte celý stream, buffer podle potřeby zdvojnásobí.
+         *
+         * @return false pokud je tělo delší než {@code maxBytes}
+         */
+        public boolean readFrom(InputStream in, int maxBytes) throws IOException {
+            length = 0;
+            while (true) {
+                if (length == array.length) {
+                    if (array.length >= maxBytes) {
+                        // Plný buffer na limitu – je ještě něco za ním?
+                        return in.read() < 0;
+                    }
+                    array = Arrays.copyOf(array, Math.min(maxBytes, array.length * 2));
+                }
+                int read = in.read(array, length, array.length - length);
+                if (read < 0) {
+                    return true;
+                }
+                length += read;
+            }
+        }
+
+        public byte[] array() {
+            return array;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        /**
+         * Kopie přesné délky – pro zpracování mimo request vlákno.
+         */
+        public byte[] copy() {
+            return Arrays.copyOf(array, length);
+        }
+    }
+}
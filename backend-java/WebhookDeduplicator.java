@@ -0,0 +1,337 @@
+package com.webpojede.webhook;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Deduplikace Stripe webhooků podle ID události.
+ *
+ * Stripe doručuje "at-least-once", stejná událost tedy může přijít vícekrát.
+ * Index je kruh časových bucketů – každý bucket je hash set primitivních
+ * 64bit otisků ID (open addressing, bez boxingu). Bucket starší než okno
+ * se jen vyčistí a použije znovu, paměť je tedy shora omezená.
+ *
+ * Stav se pravidelně ukládá na disk, aby restart nezpůsobil přehrání
+ * celého okna.
+ *
+ * @author WebPojede
+ */
+@Component
+public class WebhookDeduplicator {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookDeduplicator.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x57484431; // "WHD1"
+
+    @Value("${webhook.dedup.buckets:24}")
+    private int bucketCount;
+
+    @Value("${webhook.dedup.bucket-minutes:180}")
+    private long bucketMinutes;
+
+    @Value("${webhook.dedup.max-entries-per-bucket:65536}")
+    private int maxEntriesPerBucket;
+
+    @Value("${webhook.dedup.snapshot-file:./data/webhook-dedup.snapshot}")
+    private String snapshotFile;
+
+    private final MeterRegistry meterRegistry;
+
+    // ReentrantLock místo synchronized – nepřipíná virtuální vlákna
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private Bucket[] buckets;
+    private long bucketMillis;
+    private Counter duplicates;
+    private Counter overflows;
+
+    public WebhookDeduplicator(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        bucketMillis = bucketMinutes * 60_000L;
+        buckets = new Bucket[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new Bucket(maxEntriesPerBucket);
+        }
+
+        duplicates = Counter.builder("webhook.dedup.duplicates")
+            .description("Opakovaně doručené události, které se nezpracovaly")
+            .register(meterRegistry);
+        overflows = Counter.builder("webhook.dedup.overflows")
+            .description("Události, které se kvůli plnému bucketu nezapamatovaly")
+            .register(meterRegistry);
+        Gauge.builder("webhook.dedup.size", this, WebhookDeduplicator::size)
+            .register(meterRegistry);
+
+        loadSnapshot();
+    }
+
+    /**
+     * Zapamatuje si ID události.
+     *
+     * @return true pokud je událost nová, false pokud jde o duplicitu
+     */
+    public boolean markIfAbsent(String eventId) {
+        lock.lock();
+        try {
+            long fingerprint = fingerprint(eventId);
+            long epoch = System.currentTimeMillis() / bucketMillis;
+
+            for (Bucket bucket : buckets) {
+                if (bucket.epoch > epoch - bucketCount && bucket.contains(fingerprint)) {
+                    duplicates.increment();
+                    return false;
+                }
+            }
+
+            if (!current(epoch).add(fingerprint)) {
+                overflows.increment();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zapomene ID události (např. když se ji nepodařilo zařadit do fronty
+     * a Stripe ji musí doručit znovu).
+     */
+    public void forget(String eventId) {
+        lock.lock();
+        try {
+            long fingerprint = fingerprint(eventId);
+            for (Bucket bucket : buckets) {
+                bucket.remove(fingerprint);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Počet zapamatovaných událostí v okně.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            int size = 0;
+            for (Bucket bucket : buckets) {
+                size += bucket.size;
+            }
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Bucket current(long epoch) {
+        Bucket bucket = buckets[(int) Math.floorMod(epoch, (long) bucketCount)];
+        if (bucket.epoch != epoch) {
+            // Bucket z minulého kola – vyčistit a použít znovu
+            bucket.reset(epoch);
+        }
+        return bucket;
+    }
+
+    /**
+     * 64bit otisk ID (FNV-1a nad znaky + finální promíchání), bez alokace.
+     */
+    static long fingerprint(String eventId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < eventId.length(); i++) {
+            hash ^= eventId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash; // 0 = prázdný slot
+    }
+
+    /**
+     * Pravidelně uloží snapshot indexu na disk.
+     */
+    @Scheduled(fixedDelayString = "${webhook.dedup.snapshot-interval-ms:30000}")
+    @PreDestroy
+    public void saveSnapshot() {
+        long[] epochs = new long[bucketCount];
+        long[][] keys = new long[bucketCount][];
+        lock.lock();
+        try {
+            for (int i = 0; i < bucketCount; i++) {
+                epochs[i] = buckets[i].epoch;
+                keys[i] = buckets[i].toArray();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        Path target = Path.of(snapshotFile);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(target.toAbsolutePath().getParent());
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeLong(bucketMillis);
+                out.writeInt(bucketCount);
+                for (int i = 0; i < bucketCount; i++) {
+                    out.writeLong(epochs[i]);
+                    out.writeInt(keys[i].length);
+                    for (long key : keys[i]) {
+                        out.writeLong(key);
+                    }
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Unable to save webhook dedup snapshot message=\"{}\"", e.getMessage());
+        }
+    }
+
+    private void loadSnapshot() {
+        Path path = Path.of(snapshotFile);
+        if (!Files.exists(path)) {
+            return;
+        }
+        long epochNow = System.currentTimeMillis() / bucketMillis;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readLong() != bucketMillis) {
+                log.warn("Webhook dedup snapshot has different layout, ignoring file={}", path);
+                return;
+            }
+            int storedBuckets = in.readInt();
+            for (int i = 0; i < storedBuckets; i++) {
+                long epoch = in.readLong();
+                int size = in.readInt();
+                boolean live = epoch > epochNow - bucketCount && epoch <= epochNow;
+                Bucket bucket = live ? current(epoch) : null;
+                for (int k = 0; k < size; k++) {
+                    long key = in.readLong();
+                    if (bucket != null) {
+                        bucket.add(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unable to load webhook dedup snapshot message=\"{}\"", e.getMessage());
+        }
+    }
+
+    /**
+     * Hash set primitivních long hodnot s lineárním sondováním.
+     * Kapacita je pevná (2× max. počet položek), po zaplnění se nové
+     * otisky už nepřidávají.
+     */
+    private static final class Bucket {
+
+        private final int maxEntries;
+        private long[] slots;
+        private int size;
+        private long epoch = Long.MIN_VALUE;
+
+        Bucket(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        void reset(long epoch) {
+            this.epoch = epoch;
+            if (slots != null && size > 0) {
+                Arrays.fill(slots, 0L);
+            }
+            size = 0;
+        }
+
+        boolean contains(long key) {
+            if (slots == null || size == 0) {
+                return false;
+            }
+            int mask = slots.length - 1;
+            for (int i = (int) key & mask; slots[i] != 0; i = (i + 1) & mask) {
+                if (slots[i] == key) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean add(long key) {
+            if (slots == null) {
+                // Alokace až při prvním použití, pak se pole jen recykluje
+                slots = new long[Integer.highestOneBit(Math.max(maxEntries, 8) - 1) << 2];
+            }
+            int mask = slots.length - 1;
+            int i = (int) key & mask;
+            for (; slots[i] != 0; i = (i + 1) & mask) {
+                if (slots[i] == key) {
+                    return true;
+                }
+            }
+            if (size >= maxEntries) {
+                return false;
+            }
+            slots[i] = key;
+            size++;
+            return true;
+        }
+
+        void remove(long key) {
+            if (slots == null || size == 0) {
+                return;
+            }
+            int mask = slots.length - 1;
+            int i = (int) key & mask;
+            while (slots[i] != key) {
+                if (slots[i] == 0) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            // Backward-shift: posuň následující záznamy, aby se nepřerušil řetězec sondování
+            int hole = i;
+            for (int j = (hole + 1) & mask; slots[j] != 0; j = (j + 1) & mask) {
+                int home = (int) slots[j] & mask;
+                if (((j - home) & mask) >= ((j - hole) & mask)) {
+                    slots[hole] = slots[j];
+                    hole = j;
+                }
+            }
+            slots[hole] = 0;
+            size--;
+        }
+
+        long[] toArray() {
+            long[] keys = new long[size];
+            if (slots != null) {
+                int n = 0;
+                for (long slot : slots) {
+                    if (slot != 0) {
+                        keys[n++] = slot;
+                    }
+                }
+            }
+            return keys;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.webpojede.webhook;
+
+import com.google.gson.JsonParser;
+import com.webpojede.config.WorkerThreads;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Asynchronní fronta pro zpracování webhooků.
+ *
+ * Controller jen ověří podpis, zapíše payload do žurnálu a hned vrátí 200.
+ * Samotné zpracování běží v omezeném worker poolu. Když je fronta plná,
+ * {@link #offer(byte[], int)} vrátí false a Stripe událost pošle znovu později.
+ *
+ * Stripe už dostal 200, takže neúspěšné zpracování se nesmí ztratit:
+ * záznam zůstává v žurnálu rozpracovaný (checkpoint se za něj neposune)
+ * a zkouší se znovu s rostoucí prodlevou. Po vyčerpání pokusů se payload
+ * zapíše do dead-letter souboru (NDJSON, jde přehrát přes
+ * {@link WebhookReplayRunner}) a ID události se zapomene v deduplikátoru,
+ * aby ji šlo poslat znovu ze Stripe dashboardu. Nejde-li zapsat ani
+ * dead-letter, zkusí se to znovu stejně omezeně a nakonec zůstane payload
+ * jen v logu. Po restartu se přehrají jen záznamy, které se nedokončily
+ * (žurnál si pamatuje i dokončené mimo pořadí).
+ *
+ * @author WebPojede
+ */
+@Component
+public class WebhookIngestQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookIngestQueue.class);
+
+    @Value("${webhook.queue.capacity:1000}")
+    private int capacity;
+
+    @Value("${webhook.queue.workers:4}")
+    private int workers;
+
+    @Value("${webhook.journal.dir:./data/webhook-journal}")
+    private String journalDir;
+
+    @Value("${webhook.journal.fsync:true}")
+    private boolean fsync;
+
+    @Value("${webhook.journal.truncate-threshold-bytes:67108864}")
+    private long truncateThresholdBytes;
+
+    @Value("${webhook.processing.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${webhook.processing.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    @Value("${webhook.processing.dead-letter-file:${webhook.journal.dir:./data/webhook-journal}/dead-letter.ndjson}")
+    private String deadLetterFile;
+
+    private final StripeEventDispatcher dispatcher;
+    private final WebhookDeduplicator deduplicator;
+    private final MeterRegistry meterRegistry;
+    private final WorkerThreads workerThreads;
+    private final ReentrantLock deadLetterLock = new ReentrantLock();
+
+    private WebhookJournal journal;
+    private ExecutorService executor;
+    private ScheduledExecutorService retryScheduler;
+    private Semaphore permits;
+
+    private Timer ackLatency;
+    private Timer processingLag;
+    private Counter rejected;
+    private Counter failed;
+    private Counter deadLettered;
+    private Counter lost;
+
+    public WebhookIngestQueue(StripeEventDispatcher dispatcher, WebhookDeduplicator deduplicator,
+                              MeterRegistry meterRegistry, WorkerThreads workerThreads) {
+        this.dispatcher = dispatcher;
+        this.deduplicator = deduplicator;
+        this.meterRegistry = meterRegistry;
+        this.workerThreads = workerThreads;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        journal = new WebhookJournal(Path.of(journalDir), fsync, truncateThresholdBytes);
+        permits = new Semaphore(capacity);
+
+        executor = workerThreads.fixedPool("webhook-worker", workers);
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(workerThreads.factory("webhook-retry"));
+
+        Gauge.builder("webhook.queue.depth", journal, WebhookJournal::pending)
+            .description("Přijaté, ale ještě nezpracované webhooky")
+            .register(meterRegistry);
+        ackLatency = Timer.builder("webhook.ack.latency")
+            .description("Doba od přijetí requestu po potvrzení Stripu")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        processingLag = Timer.builder("webhook.processing.lag")
+            .description("Doba od zápisu do žurnálu po začátek zpracování")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        rejected = Counter.builder("webhook.queue.rejected")
+            .description("Webhooky odmítnuté kvůli plné frontě")
+            .register(meterRegistry);
+        failed = Counter.builder("webhook.processing.failed")
+            .description("Neúspěšné pokusy o zpracování webhooku")
+            .register(meterRegistry);
+        deadLettered = Counter.builder("webhook.processing.dead.lettered")
+            .description("Webhooky odložené do dead-letter souboru po vyčerpání pokusů")
+            .register(meterRegistry);
+        lost = Counter.builder("webhook.processing.lost")
+            .description("Webhooky, které nešlo zpracovat ani zapsat do dead-letter souboru (jen v logu)")
+            .register(meterRegistry);
+
+        // Přehraj události, které se před restartem nestihly zpracovat
+        for (WebhookJournal.Record record : journal.readUncommitted()) {
+            permits.acquireUninterruptibly();
+            submit(record.offset(), record.payload());
+        }
+    }
+
+    /**
+     * Zapíše ověřený payload do žurnálu a naplánuje zpracování.
+     * Buffer volajícího se nedrží – worker dostane vlastní kopii bajtů.
+     *
+     * @return false pokud je fronta plná (klient má poslat znovu)
+     */
+    public boolean offer(byte[] payload, int length) throws IOException {
+        if (!permits.tryAcquire()) {
+            rejected.increment();
+            return false;
+        }
+        try {
+            long offset = journal.append(payload, length);
+            submit(offset, Arrays.copyOf(payload, length));
+            return true;
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Zaznamená dobu potvrzení webhooku.
+     */
+    public void recordAck(long startNanos) {
+        ackLatency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void submit(long offset, byte[] payload) {
+        long enqueuedAt = System.nanoTime();
+        executor.execute(() -> process(offset, payload, enqueuedAt, 1));
+    }
+
+    private void process(long offset, byte[] payload, long enqueuedAt, int attempt) {
+        if (attempt == 1) {
+            processingLag.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+        }
+        try {
+            dispatcher.dispatch(payload);
+        } catch (RuntimeException e) {
+            failed.increment();
+            if (attempt < maxAttempts) {
+                long delayMs = retryBackoffMs << Math.min(attempt - 1, 10);
+                log.warn("Webhook processing failed journalOffset={} attempt={} retryInMs={}",
+                    offset, attempt, delayMs, e);
+                // Záznam zůstává rozpracovaný a drží místo ve frontě
+                retryScheduler.schedule(
+                    () -> executor.execute(() -> process(offset, payload, enqueuedAt, attempt + 1)),
+                    delayMs, TimeUnit.MILLISECONDS);
+                return;
+            }
+            log.error("Webhook processing failed journalOffset={} attempts={}", offset, attempt, e);
+            deadLetter(offset, payload, 1);
+            return;
+        }
+        journal.complete(offset);
+        permits.release();
+    }
+
+    /**
+     * Odloží payload do dead-letter souboru. Nepovedený zápis se opakuje
+     * (záznam mezitím zůstává v žurnálu rozpracovaný), nejvýš
+     * {@code maxAttempts}-krát – pak se payload zaloguje celý a záznam se
+     * uzavře, aby checkpoint a zkracování žurnálu nestály.
+     */
+    private void deadLetter(long offset, byte[] payload, int attempt) {
+        if (!writeDeadLetter(offset, payload)) {
+            if (attempt < maxAttempts) {
+                long delayMs = retryBackoffMs << Math.min(attempt - 1, 10);
+                retryScheduler.schedule(
+                    () -> executor.execute(() -> deadLetter(offset, payload, attempt + 1)),
+                    delayMs, TimeUnit.MILLISECONDS);
+                return;
+            }
+            lost.increment();
+            log.error("Webhook dropped, dead letter file not writable journalOffset={} payload={}",
+                offset, new String(payload, StandardCharsets.UTF_8));
+        }
+        journal.complete(offset);
+        permits.release();
+    }
+
+    /**
+     * Zapíše payload do dead-letter souboru a zapomene ID události.
+     *
+     * @return false pokud se zápis nepovedl
+     */
+    private boolean writeDeadLetter(long offset, byte[] payload) {
+        String eventId = null;
+        deadLetterLock.lock();
+        try {
+            // Stripe posílá JSON přes víc řádků – do NDJSON jde kompaktní tvar
+            String line = JsonParser.parseString(new String(payload, StandardCharsets.UTF_8)).toString() + "\n";
+            eventId = EventEnvelope.peek(payload, payload.length).id();
+            Files.writeString(Path.of(deadLetterFile), line, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE,
+                StandardOpenOption.SYNC);
+        } catch (IOException | RuntimeException e) {
+            log.error("Unable to dead-letter webhook journalOffset={} message=\"{}\"", offset, e.getMessage());
+            return false;
+        } finally {
+            deadLetterLock.unlock();
+        }
+        deadLettered.increment();
+        if (eventId != null) {
+            deduplicator.forget(eventId);
+        }
+        log.error("Webhook moved to dead letter file journalOffset={} eventId={} file={}",
+            offset, eventId, deadLetterFile);
+        return true;
+    }
+
+    /**
+     * Pravidelně uloží checkpoint žurnálu.
+     */
+    @Scheduled(fixedDelayString = "${webhook.journal.checkpoint-interval-ms:1000}")
+    public void checkpoint() {
+        try {
+            journal.checkpoint();
+        } catch (IOException e) {
+            log.warn("Webhook journal checkpoint failed message=\"{}\"", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        // Naplánované opakování se po restartu přehraje ze žurnálu
+        retryScheduler.shutdownNow();
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+        journal.close();
+    }
+}
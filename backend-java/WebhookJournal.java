@@ -0,0 +1,220 @@
+package com.webpojede.webhook;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only žurnál přijatých webhooků.
+ *
+ * Každý záznam je uložen jako [int délka][UTF-8 payload] – payload se
+ * zapisuje přímo z bufferu requestu, bez převodu na String. Vedle žurnálu
+ * se drží checkpoint soubor s offsetem, od kterého ještě nejsou všechny
+ * události zpracované, a s offsety za ním, které už zpracované jsou
+ * (dokončené mimo pořadí) – po restartu se přehrají jen ty ostatní.
+ *
+ * @author WebPojede
+ */
+public class WebhookJournal implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookJournal.class);
+
+    private static final String JOURNAL_FILE = "events.log";
+    private static final String CHECKPOINT_FILE = "events.checkpoint";
+
+    private final Path checkpointPath;
+    private final FileChannel channel;
+    private final boolean fsync;
+    private final long truncateThresholdBytes;
+
+    // Offsety záznamů, které jsou zapsané, ale ještě nezpracované
+    private final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+
+    // Zpracované offsety za nejnižším nezpracovaným (jdou do checkpointu)
+    private final ConcurrentSkipListSet<Long> completed = new ConcurrentSkipListSet<>();
+
+    // ReentrantLock místo synchronized – I/O pod zámkem nepřipíná virtuální vlákno
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long writePosition;
+
+    public WebhookJournal(Path directory, boolean fsync, long truncateThresholdBytes) throws IOException {
+        Files.createDirectories(directory);
+        this.checkpointPath = directory.resolve(CHECKPOINT_FILE);
+        this.channel = FileChannel.open(directory.resolve(JOURNAL_FILE),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.fsync = fsync;
+        this.truncateThresholdBytes = truncateThresholdBytes;
+        this.writePosition = channel.size();
+    }
+
+    /**
+     * Zapíše payload na konec žurnálu.
+     *
+     * @return offset záznamu, kterým se později potvrdí zpracování
+     */
+    public long append(byte[] payload, int length) throws IOException {
+        // Hlavička + payload jedním gather zápisem, payload se nekopíruje
+        ByteBuffer[] record = {
+            ByteBuffer.allocate(Integer.BYTES).putInt(length).flip(),
+            ByteBuffer.wrap(payload, 0, length)
+        };
+
+        lock.lock();
+        try {
+            long offset = writePosition;
+            channel.position(writePosition);
+            while (record[0].hasRemaining() || record[1].hasRemaining()) {
+                writePosition += channel.write(record);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+            inFlight.add(offset);
+            return offset;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Označí záznam jako zpracovaný.
+     */
+    public void complete(long offset) {
+        completed.add(offset);
+        inFlight.remove(offset);
+    }
+
+    /**
+     * Uloží checkpoint: nejnižší nezpracovaný offset a za ním offsety už
+     * zpracovaných záznamů. Pokud je vše zpracované a žurnál přerostl
+     * limit, zkrátí ho na nulu.
+     */
+    public void checkpoint() throws IOException {
+        lock.lock();
+        try {
+            long committed = inFlight.isEmpty() ? writePosition : inFlight.first();
+            completed.headSet(committed).clear();
+
+            if (inFlight.isEmpty() && writePosition >= truncateThresholdBytes) {
+                channel.truncate(0);
+                writePosition = 0;
+                committed = 0;
+                completed.clear();
+            }
+
+            List<Long> done = List.copyOf(completed);
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + Integer.BYTES + done.size() * Long.BYTES)
+                .putLong(committed)
+                .putInt(done.size());
+            done.forEach(buffer::putLong);
+
+            Path temp = checkpointPath.resolveSibling(CHECKPOINT_FILE + ".tmp");
+            Files.write(temp, buffer.array());
+            Files.move(temp, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Načte nezpracované záznamy od posledního checkpointu (pro přehrání
+     * po restartu). Záznamy dokončené mimo pořadí se přeskočí.
+     */
+    public List<Record> readUncommitted() throws IOException {
+        lock.lock();
+        try {
+            NavigableSet<Long> done = new TreeSet<>();
+            long position = readCheckpoint(done);
+            List<Record> records = new ArrayList<>();
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+
+            while (position + Integer.BYTES <= writePosition) {
+                header.clear();
+                channel.read(header, position);
+                int length = header.flip().getInt();
+
+                if (length < 0 || position + Integer.BYTES + length > writePosition) {
+                    // Neúplný záznam po pádu – zbytek žurnálu zahodíme
+                    log.warn("Truncating torn webhook journal record offset={}", position);
+                    channel.truncate(position);
+                    writePosition = position;
+                    break;
+                }
+
+                if (done.contains(position)) {
+                    completed.add(position);
+                } else {
+                    ByteBuffer body = ByteBuffer.allocate(length);
+                    channel.read(body, position + Integer.BYTES);
+                    records.add(new Record(position, body.array()));
+                    inFlight.add(position);
+                }
+                position += Integer.BYTES + length;
+            }
+            return records;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Počet zapsaných, ale ještě nezpracovaných záznamů.
+     */
+    public int pending() {
+        return inFlight.size();
+    }
+
+    /**
+     * @param done sem se doplní zpracované offsety za checkpointem
+     * @return offset checkpointu
+     */
+    private long readCheckpoint(NavigableSet<Long> done) throws IOException {
+        if (!Files.exists(checkpointPath)) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(checkpointPath));
+        if (buffer.remaining() < Long.BYTES) {
+            return 0;
+        }
+        long offset = Math.min(Math.max(buffer.getLong(), 0), writePosition);
+        // Starší formát obsahuje jen offset
+        if (buffer.remaining() >= Integer.BYTES) {
+            int count = buffer.getInt();
+            for (int i = 0; i < count && buffer.remaining() >= Long.BYTES; i++) {
+                done.add(buffer.getLong());
+            }
+        }
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            checkpoint();
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Záznam žurnálu – offset a raw JSON payload (UTF-8).
+     */
+    public record Record(long offset, byte[] payload) {
+    }
+}
@@ -0,0 +1,352 @@
+package com.webpojede.webhook;
+
+import com.webpojede.config.WorkerThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hromadné přehrání Stripe událostí z NDJSON exportu (jedna událost na řádek).
+ *
+ * Použití po výpadku:
+ *   java -jar payment-service.jar --webhook.replay.file=/data/events.ndjson
+ *
+ * Soubor se čte přes memory-mapped I/O po oknech. Události se rozdělí do
+ * partition podle objektu (PaymentIntent, zákazník...) – v rámci objektu
+ * se zachová pořadí, různé objekty běží paralelně. Průběžně se ukládá
+ * checkpoint (offset v souboru), od kterého jde přehrávání obnovit.
+ *
+ * Neúspěšně zpracovaná událost se z deduplikátoru zapomene a její řádek
+ * se připíše do souboru {@code webhook.replay.failed-file}, který jde
+ * přehrát znovu. Stejně se odloží řádek, který není JSON objekt (jen
+ * úplně prázdné řádky se přeskočí). Pokud se ani ten zápis nepovede,
+ * checkpoint se za událost neposune.
+ *
+ * @author WebPojede
+ */
+@Component
+@ConditionalOnProperty("webhook.replay.file")
+public class WebhookReplayRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookReplayRunner.class);
+
+    // Velikost mapovaného okna; řádek delší než okno se nepřečte
+    private static final long MAP_WINDOW_BYTES = 256L * 1024 * 1024;
+
+    private static final byte[] NEWLINE = {'\n'};
+
+    @Value("${webhook.replay.file}")
+    private String replayFile;
+
+    @Value("${webhook.replay.checkpoint-file:${webhook.replay.file}.checkpoint}")
+    private String checkpointFile;
+
+    @Value("${webhook.replay.failed-file:${webhook.replay.file}.failed}")
+    private String failedFile;
+
+    @Value("${webhook.replay.resume:true}")
+    private boolean resume;
+
+    @Value("${webhook.replay.partitions:8}")
+    private int partitionCount;
+
+    @Value("${webhook.replay.partition-queue-size:1024}")
+    private int partitionQueueSize;
+
+    @Value("${webhook.replay.skip-duplicates:true}")
+    private boolean skipDuplicates;
+
+    @Value("${webhook.replay.report-interval-ms:5000}")
+    private long reportIntervalMs;
+
+    @Value("${webhook.replay.exit-when-done:true}")
+    private boolean exitWhenDone;
+
+    private final StripeEventDispatcher dispatcher;
+    private final WebhookDeduplicator deduplicator;
+    private final WorkerThreads workerThreads;
+    private final ApplicationContext applicationContext;
+    private final ReentrantLock failedFileLock = new ReentrantLock();
+
+    // Offsety řádků, které jsou rozdělené, ale ještě nezpracované
+    private final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong ignored = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile long submittedUpTo;
+
+    public WebhookReplayRunner(StripeEventDispatcher dispatcher, WebhookDeduplicator deduplicator,
+                               WorkerThreads workerThreads, ApplicationContext applicationContext) {
+        this.dispatcher = dispatcher;
+        this.deduplicator = deduplicator;
+        this.workerThreads = workerThreads;
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Path file = Path.of(replayFile);
+        long startOffset = resume ? readCheckpoint() : 0;
+        submittedUpTo = startOffset;
+
+        log.info("Replaying webhooks file={} offset={} partitions={}", file, startOffset, partitionCount);
+
+        Partition[] partitions = new Partition[partitionCount];
+        CountDownLatch finished = new CountDownLatch(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(partitionQueueSize, finished);
+            workerThreads.factory("webhook-replay-" + i).newThread(partitions[i]).start();
+        }
+
+        long startNanos = System.nanoTime();
+        Thread reporter = workerThreads.factory("webhook-replay-report")
+            .newThread(() -> report(startNanos));
+        reporter.start();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            read(channel, startOffset, partitions);
+        } finally {
+            for (Partition partition : partitions) {
+                partition.queue.put(Task.END);
+            }
+            finished.await();
+            reporter.interrupt();
+            writeCheckpoint();
+        }
+
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        log.info("Replay finished processed={} duplicates={} ignored={} failed={} eventsPerSecond={}",
+            processed.get(), duplicates.get(), ignored.get(), failed.get(),
+            Math.round(processed.get() / Math.max(seconds, 1e-9)));
+        if (failed.get() > 0) {
+            log.warn("Failed events written to file={} (replay it with --webhook.replay.file)", failedFile);
+        }
+
+        if (exitWhenDone) {
+            System.exit(SpringApplication.exit(applicationContext, () -> failed.get() == 0 ? 0 : 1));
+        }
+    }
+
+    /**
+     * Projde soubor po mapovaných oknech a každý řádek pošle do partition.
+     */
+    private void read(FileChannel channel, long startOffset, Partition[] partitions)
+            throws IOException, InterruptedException {
+        long size = channel.size();
+        long position = startOffset;
+
+        while (position < size) {
+            long windowSize = Math.min(MAP_WINDOW_BYTES, size - position);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+            boolean lastWindow = position + windowSize == size;
+
+            int lineStart = 0;
+            for (int i = 0; i < windowSize; i++) {
+                if (window.get(i) == '\n') {
+                    submit(window, lineStart, i, position, partitions);
+                    lineStart = i + 1;
+                }
+            }
+            if (lastWindow && lineStart < windowSize) {
+                // Poslední řádek bez \n
+                submit(window, lineStart, (int) windowSize, position, partitions);
+                lineStart = (int) windowSize;
+            }
+            if (lineStart == 0) {
+                throw new IOException("Line at offset " + position + " is longer than " + MAP_WINDOW_BYTES + " bytes");
+            }
+            // Další okno začíná na začátku neúplného řádku
+            position += lineStart;
+        }
+    }
+
+    private void submit(ByteBuffer window, int from, int to, long windowOffset, Partition[] partitions)
+            throws InterruptedException {
+        long lineOffset = windowOffset + from;
+        long nextOffset = windowOffset + to + 1;
+        if (to == from || (to - from == 1 && window.get(from) == '\r')) {
+            submittedUpTo = nextOffset; // prázdný řádek
+            return;
+        }
+
+        byte[] line = new byte[to - from];
+        window.get(from, line);
+
+        EventEnvelope envelope;
+        try {
+            envelope = EventEnvelope.peekWithObjectKey(new String(line, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            failed.incrementAndGet();
+            log.warn("Invalid replay line offset={} bytes={}", lineOffset, line.length);
+            if (!writeFailed(lineOffset, line)) {
+                // Checkpoint se za neuložený řádek neposune
+                inFlight.add(lineOffset);
+            }
+            submittedUpTo = nextOffset;
+            return;
+        }
+        if (!dispatcher.handles(envelope.type())) {
+            // Typ, který dispatcher nezpracovává – nedeserializovat
+            ignored.incrementAndGet();
+            submittedUpTo = nextOffset;
+            return;
+        }
+
+        String key = envelope.objectKey() != null ? envelope.objectKey() : String.valueOf(envelope.id());
+        inFlight.add(lineOffset);
+        submittedUpTo = nextOffset;
+        partitions[Math.floorMod(key.hashCode(), partitions.length)]
+            .queue.put(new Task(lineOffset, envelope.id(), line));
+    }
+
+    private void process(Task task) {
+        boolean marked = false;
+        try {
+            if (skipDuplicates && task.eventId() != null) {
+                if (!deduplicator.markIfAbsent(task.eventId())) {
+                    duplicates.incrementAndGet();
+                    inFlight.remove(task.offset());
+                    return;
+                }
+                marked = true;
+            }
+            dispatcher.dispatch(task.payload());
+            processed.incrementAndGet();
+            inFlight.remove(task.offset());
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            log.error("Replay failed offset={} eventId={}", task.offset(), task.eventId(), e);
+            if (marked) {
+                // Událost nebyla zpracovaná – další přehrání ani Stripe ji nesmí brát jako duplicitu
+                deduplicator.forget(task.eventId());
+            }
+            if (writeFailed(task.offset(), task.payload())) {
+                inFlight.remove(task.offset());
+            }
+        }
+    }
+
+    /**
+     * Připíše řádek neúspěšné události do souboru pro opakované přehrání.
+     *
+     * @return false pokud se zápis nepovedl (offset pak zůstane nezpracovaný)
+     */
+    private boolean writeFailed(long offset, byte[] payload) {
+        failedFileLock.lock();
+        try (FileChannel channel = FileChannel.open(Path.of(failedFile),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE)) {
+            ByteBuffer[] line = {ByteBuffer.wrap(payload), ByteBuffer.wrap(NEWLINE)};
+            while (line[1].hasRemaining()) {
+                channel.write(line);
+            }
+            channel.force(false);
+            return true;
+        } catch (IOException e) {
+            log.error("Unable to write failed replay event offset={} message=\"{}\"", offset, e.getMessage());
+            return false;
+        } finally {
+            failedFileLock.unlock();
+        }
+    }
+
+    /**
+     * Průběžný výpis rychlosti a uložení checkpointu.
+     */
+    private void report(long startNanos) {
+        long lastCount = 0;
+        long lastNanos = startNanos;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(reportIntervalMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            long count = processed.get() + duplicates.get();
+            log.info("Replay progress events={} eventsPerSecond={} offset={}",
+                count, Math.round((count - lastCount) / ((now - lastNanos) / 1e9)), committedOffset());
+            lastCount = count;
+            lastNanos = now;
+            writeCheckpoint();
+        }
+    }
+
+    /**
+     * Offset, od kterého je bezpečné pokračovat – vše před ním je zpracované.
+     */
+    private long committedOffset() {
+        long upTo = submittedUpTo;
+        Long oldest = inFlight.isEmpty() ? null : inFlight.first();
+        return oldest != null ? Math.min(oldest, upTo) : upTo;
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path path = Path.of(checkpointFile);
+        return Files.exists(path) ? Long.parseLong(Files.readString(path).trim()) : 0;
+    }
+
+    private void writeCheckpoint() {
+        Path target = Path.of(checkpointFile);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Files.writeString(temp, Long.toString(committedOffset()));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Unable to write replay checkpoint message=\"{}\"", e.getMessage());
+        }
+    }
+
+    /**
+     * Jedna partition = jedno vlákno + omezená fronta (backpressure pro čtení).
+     */
+    private final class Partition implements Runnable {
+
+        private final BlockingQueue<Task> queue;
+        private final CountDownLatch finished;
+
+        Partition(int queueSize, CountDownLatch finished) {
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+            this.finished = finished;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (Task task = queue.take(); task != Task.END; task = queue.take()) {
+                    process(task);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                finished.countDown();
+            }
+        }
+    }
+
+    private record Task(long offset, String eventId, byte[] payload) {
+        static final Task END = new Task(-1, null, null);
+    }
+}
@@ -0,0 +1,185 @@
+package com.webpojede.webhook;
+
+import com.stripe.exception.SignatureVerificationException;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Ověření hlavičky Stripe-Signature nad raw bajty těla.
+ *
+ * Stejný algoritmus jako {@code Webhook.Signature.verifyHeader}
+ * (HMAC-SHA256 z {@code t + "." + payload}, schéma v1), ale bez převodu
+ * payloadu na String a zpět. Hlavička se čte bez split(), podpis se
+ * porovnává přímo s hex znaky v konstantním čase a inicializované
+ * {@link Mac} instance se recyklují.
+ *
+ * @author WebPojede
+ */
+public class WebhookSignature {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int HMAC_BYTES = 32;
+
+    private final SecretKeySpec key;
+    private final long toleranceSeconds;
+    private final BlockingQueue<Hmac> pool = new ArrayBlockingQueue<>(64);
+
+    /**
+     * @param toleranceSeconds max. stáří časového razítka, 0 = nekontrolovat
+     */
+    public WebhookSignature(String secret, long toleranceSeconds) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.toleranceSeconds = toleranceSeconds;
+    }
+
+    /**
+     * @throws SignatureVerificationException neplatná hlavička, podpis nebo staré razítko
+     */
+    public void verify(String header, byte[] payload, int length) throws SignatureVerificationException {
+        int timestampStart = -1;
+        int timestampEnd = -1;
+        // Jako SDK: platí první t=
+        for (int i = 0; i < header.length() && timestampStart < 0; i = next(header, i)) {
+            if (header.startsWith("t=", i)) {
+                timestampStart = i + 2;
+                timestampEnd = end(header, i);
+            }
+        }
+        if (timestampStart < 0 || timestampStart == timestampEnd) {
+            throw new SignatureVerificationException("Unable to extract timestamp and signatures from header", header);
+        }
+
+        long timestamp;
+        try {
+            timestamp = Long.parseLong(header, timestampStart, timestampEnd, 10);
+        } catch (NumberFormatException e) {
+            throw new SignatureVerificationException("Unable to extract timestamp and signatures from header", header);
+        }
+        if (timestamp <= 0) {
+            throw new SignatureVerificationException("Unable to extract timestamp and signatures from header", header);
+        }
+
+        // SDK podepisuje razítko převedené na číslo a zpět ("+12", "012" → "12")
+        String signed = header;
+        if (!canonical(header, timestampStart, timestampEnd)) {
+            signed = Long.toString(timestamp);
+            timestampStart = 0;
+            timestampEnd = signed.length();
+        }
+
+        Hmac hmac = acquire();
+        try {
+            byte[] expected = hmac.sign(signed, timestampStart, timestampEnd, payload, length);
+            boolean found = false;
+            boolean matched = false;
+            for (int i = 0; i < header.length(); i = next(header, i)) {
+                if (header.startsWith("v1=", i)) {
+                    found = true;
+                    matched |= hexEquals(expected, header, i + 3, end(header, i));
+                }
+            }
+            if (!found) {
+                throw new SignatureVerificationException("No signatures found with expected scheme", header);
+            }
+            if (!matched) {
+                throw new SignatureVerificationException(
+                    "No signatures found matching the expected signature for payload", header);
+            }
+        } finally {
+            pool.offer(hmac);
+        }
+
+        if (toleranceSeconds > 0 && timestamp < System.currentTimeMillis() / 1000 - toleranceSeconds) {
+            throw new SignatureVerificationException("Timestamp outside the tolerance zone", header);
+        }
+    }
+
+    private Hmac acquire() {
+        Hmac hmac = pool.poll();
+        return hmac != null ? hmac : new Hmac(key);
+    }
+
+    /**
+     * Razítko v hlavičce je už v desítkovém tvaru čísla (ASCII číslice bez
+     * '+' a úvodních nul) – podepisují se rovnou znaky hlavičky.
+     */
+    private static boolean canonical(String header, int from, int to) {
+        if (header.charAt(from) == '0') {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            char c = header.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Začátek dalšího prvku {@code klíč=hodnota} v hlavičce.
+     */
+    private static int next(String header, int from) {
+        int comma = header.indexOf(',', from);
+        return comma < 0 ? header.length() : comma + 1;
+    }
+
+    private static int end(String header, int from) {
+        int comma = header.indexOf(',', from);
+        return comma < 0 ? header.length() : comma;
+    }
+
+    /**
+     * Porovnání v konstantním čase (vůči obsahu), hex malými písmeny jako Stripe.
+     */
+    static boolean hexEquals(byte[] expected, String header, int from, int to) {
+        if (to - from != expected.length * 2) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < expected.length; i++) {
+            diff |= header.charAt(from + 2 * i) ^ HEX[(expected[i] >> 4) & 0xf];
+            diff |= header.charAt(from + 2 * i + 1) ^ HEX[expected[i] & 0xf];
+        }
+        return diff == 0;
+    }
+
+    /**
+     * Inicializovaný Mac s vlastním výstupním bufferem.
+     */
+    private static final class Hmac {
+
+        private final Mac mac;
+        private final byte[] output = new byte[HMAC_BYTES];
+
+        Hmac(SecretKeySpec key) {
+            try {
+                mac = Mac.getInstance("HmacSHA256");
+                mac.init(key);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        byte[] sign(String header, int timestampStart, int timestampEnd, byte[] payload, int length) {
+            // Razítko jsou ASCII číslice – bajty přímo ze znaků hlavičky
+            for (int i = timestampStart; i < timestampEnd; i++) {
+                mac.update((byte) header.charAt(i));
+            }
+            mac.update((byte) '.');
+            mac.update(payload, 0, length);
+            try {
+                mac.doFinal(output, 0);
+            } catch (ShortBufferException e) {
+                throw new IllegalStateException(e);
+            }
+            return output;
+        }
+    }
+}
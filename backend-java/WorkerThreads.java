@@ -0,0 +1,56 @@
+package com.webpojede.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Továrna na vlákna pro interní worker pooly.
+ *
+ * Řídí se stejnou volbou jako Tomcat ({@code spring.threads.virtual.enabled}),
+ * takže v režimu virtuálních vláken běží na virtuálních vláknech i webhook
+ * workery a další volání Stripe mimo request vlákno.
+ *
+ * @author WebPojede
+ */
+@Component
+public class WorkerThreads {
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    /**
+     * Vlákna pojmenovaná {@code name-0}, {@code name-1}...
+     */
+    public ThreadFactory factory(String name) {
+        if (virtualThreads) {
+            return Thread.ofVirtual().name(name + "-", 0).factory();
+        }
+        return Thread.ofPlatform().name(name + "-", 0).daemon(true).factory();
+    }
+
+    /**
+     * Pool s pevným počtem vláken (omezená paralelita).
+     */
+    public ExecutorService fixedPool(String name, int threads) {
+        return Executors.newFixedThreadPool(threads, factory(name));
+    }
+
+    /**
+     * Pool pro blokující I/O (volání Stripe mimo request vlákno).
+     * S virtuálními vlákny jedno vlákno na úlohu, jinak pevný pool.
+     */
+    public ExecutorService ioPool(String name, int platformThreads) {
+        if (virtualThreads) {
+            return Executors.newThreadPerTaskExecutor(factory(name));
+        }
+        return fixedPool(name, platformThreads);
+    }
+
+    public boolean isVirtual() {
+        return virtualThreads;
+    }
+}
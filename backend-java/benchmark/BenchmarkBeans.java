@@ -0,0 +1,91 @@
+package com.webpojede.benchmark;
+
+import com.webpojede.config.WorkerThreads;
+import com.webpojede.controller.StripeController;
+import com.webpojede.service.IdempotencyCache;
+import com.webpojede.service.StripeCalls;
+import com.webpojede.webhook.NewCustomerHandler;
+import com.webpojede.webhook.PaymentOutcomeHandler;
+import com.webpojede.webhook.PaymentStatusHandler;
+import com.webpojede.webhook.RefundHandler;
+import com.webpojede.webhook.StripeEventDispatcher;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sestavení beanů pro benchmarky bez Spring kontextu.
+ *
+ * Hodnoty z @Value se nastaví stejně jako v application.properties.
+ *
+ * @author WebPojede
+ */
+final class BenchmarkBeans {
+
+    static final MeterRegistry METER_REGISTRY = new SimpleMeterRegistry();
+
+    private BenchmarkBeans() {
+    }
+
+    static StripeController stripeController() {
+        IdempotencyCache idempotencyCache = new IdempotencyCache(METER_REGISTRY);
+        ReflectionTestUtils.setField(idempotencyCache, "ttlSeconds", 600L);
+        ReflectionTestUtils.setField(idempotencyCache, "maxSize", 100_000L);
+        idempotencyCache.init();
+
+        // Cache a stream stavu plateb checkout nepoužívá. Benchmark vláken
+        // posílá tisíce souběžných checkoutů, bulkhead by je odmítl.
+        return new StripeController(null, null, idempotencyCache,
+            stripeCalls(Map.of("checkout", Integer.MAX_VALUE)));
+    }
+
+    /**
+     * StripeCalls s nastavením z application.properties.
+     */
+    static StripeCalls stripeCalls() {
+        return stripeCalls(Map.of("checkout", 120, "status", 40, "subscription", 60, "cancel", 10));
+    }
+
+    static StripeCalls stripeCalls(Map<String, Integer> bulkheadLimits) {
+        // SDK nastavuje benchmark sám (Stripe.overrideApiBase, vlastní transport)
+        StripeCalls stripeCalls = new StripeCalls(METER_REGISTRY, null);
+        ReflectionTestUtils.setField(stripeCalls, "operationGroups", Map.of(
+            "PaymentIntent.create", "checkout", "PaymentIntent.retrieve", "status",
+            "Customer.list", "subscription", "Customer.create", "subscription",
+            "Subscription.create", "subscription", "Subscription.cancel", "cancel"));
+        ReflectionTestUtils.setField(stripeCalls, "bulkheadLimits", bulkheadLimits);
+        ReflectionTestUtils.setField(stripeCalls, "defaultBulkheadLimit", 50);
+        ReflectionTestUtils.setField(stripeCalls, "bulkheadMaxWaitMs", 20L);
+        ReflectionTestUtils.setField(stripeCalls, "failureRateThreshold", 50f);
+        ReflectionTestUtils.setField(stripeCalls, "slowCallRateThreshold", 50f);
+        ReflectionTestUtils.setField(stripeCalls, "slowCallMs", 3000L);
+        ReflectionTestUtils.setField(stripeCalls, "windowSeconds", 30);
+        ReflectionTestUtils.setField(stripeCalls, "minimumCalls", 20);
+        ReflectionTestUtils.setField(stripeCalls, "openSeconds", 15L);
+        ReflectionTestUtils.setField(stripeCalls, "halfOpenCalls", 5);
+        ReflectionTestUtils.setField(stripeCalls, "retryableOperations", Set.of(
+            "PaymentIntent.create", "PaymentIntent.retrieve", "Customer.list", "Subscription.cancel",
+            "Price.list", "Product.list"));
+        ReflectionTestUtils.setField(stripeCalls, "maxAttempts", 3);
+        ReflectionTestUtils.setField(stripeCalls, "baseDelayMs", 100L);
+        ReflectionTestUtils.setField(stripeCalls, "maxDelayMs", 2000L);
+        ReflectionTestUtils.setField(stripeCalls, "retryBudgetRatio", 0.2);
+        ReflectionTestUtils.setField(stripeCalls, "retryBudgetMaxTokens", 50);
+        stripeCalls.init();
+        return stripeCalls;
+    }
+
+    /**
+     * Registr handlerů jako v aplikaci – jen pro handles(), handlery
+     * nemají závislosti a pool se nespouští.
+     */
+    static StripeEventDispatcher eventDispatcher() {
+        return new StripeEventDispatcher(List.of(
+            new PaymentStatusHandler(null, null), new PaymentOutcomeHandler(),
+            new RefundHandler(), new NewCustomerHandler(null)), METER_REGISTRY, new WorkerThreads());
+    }
+}
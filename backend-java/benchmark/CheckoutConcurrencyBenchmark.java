@@ -0,0 +1,114 @@
+package com.webpojede.benchmark;
+
+import com.stripe.Stripe;
+import com.webpojede.controller.StripeController;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Porovnání propustnosti checkoutu: pool platformních vláken vs. virtuální vlákna.
+ *
+ * Spustí N souběžných volání {@link StripeController#createPaymentIntent}
+ * proti {@link StripeStandIn} s pevnou latencí Stripe. Pool platformních
+ * vláken odpovídá výchozímu Tomcatu (200 vláken).
+ *
+ * Spuštění:
+ *   mvn -f pom-benchmark.xml compile exec:java \
+ *       -Dexec.mainClass=com.webpojede.benchmark.CheckoutConcurrencyBenchmark \
+ *       -Dexec.args="2000 150 200"
+ *
+ * Argumenty: počet souběžných checkoutů, latence Stripe v ms, počet platformních vláken.
+ *
+ * @author WebPojede
+ */
+public class CheckoutConcurrencyBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int checkouts = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 150;
+        int platformThreads = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        // HttpURLConnection drží ve výchozím stavu jen 5 keep-alive spojení
+        System.setProperty("http.maxConnections", String.valueOf(checkouts));
+
+        try (StripeStandIn standIn = StripeStandIn.start(0, Duration.ofMillis(latencyMs))) {
+            Stripe.apiKey = "sk_test_standin";
+            Stripe.overrideApiBase(standIn.baseUrl());
+            Stripe.setMaxNetworkRetries(0);
+
+            StripeController controller = BenchmarkBeans.stripeController();
+
+            System.out.printf("Stripe stand-in: %s, latence %d ms, %d souběžných checkoutů%n",
+                standIn.baseUrl(), latencyMs, checkouts);
+
+            // Zahřátí JIT a HTTP klienta
+            run(controller, Executors.newFixedThreadPool(platformThreads), Math.min(checkouts, 500));
+
+            Result platform = run(controller, Executors.newFixedThreadPool(platformThreads), checkouts);
+            Result virtual = run(controller, Executors.newVirtualThreadPerTaskExecutor(), checkouts);
+
+            platform.print("platform (" + platformThreads + " vláken)");
+            virtual.print("virtual threads");
+            System.out.printf("Zrychlení propustnosti: %.1fx%n", virtual.throughput() / platform.throughput());
+        }
+    }
+
+    private static Result run(StripeController controller, ExecutorService executor, int checkouts) throws Exception {
+        List<Future<Long>> futures = new ArrayList<>(checkouts);
+        long start = System.nanoTime();
+
+        try (executor) {
+            for (int i = 0; i < checkouts; i++) {
+                futures.add(executor.submit(() -> {
+                    long callStart = System.nanoTime();
+                    StripeController.PaymentRequest request = new StripeController.PaymentRequest();
+                    request.setAmount(49_900L);
+                    request.setCurrency("czk");
+                    request.setProductId("web-standard");
+                    // Každý checkout má vlastní klíč (jako nové načtení stránky)
+                    var response = controller.createPaymentIntent(request, UUID.randomUUID().toString());
+                    if (!response.getStatusCode().is2xxSuccessful()) {
+                        throw new IllegalStateException("Checkout failed: " + response.getBody());
+                    }
+                    return System.nanoTime() - callStart;
+                }));
+            }
+
+            long[] latencies = new long[checkouts];
+            int failures = 0;
+            for (int i = 0; i < checkouts; i++) {
+                try {
+                    latencies[i] = futures.get(i).get();
+                } catch (Exception e) {
+                    failures++;
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            return new Result(checkouts, failures, elapsed, latencies);
+        }
+    }
+
+    record Result(int checkouts, int failures, long elapsedNanos, long[] latencies) {
+
+        double throughput() {
+            return checkouts / (elapsedNanos / 1e9);
+        }
+
+        void print(String label) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            System.out.printf("%-28s %8.0f checkoutů/s  p50 %6.1f ms  p99 %7.1f ms  chyby %d%n",
+                label, throughput(),
+                sorted[(int) (sorted.length * 0.50)] / 1e6,
+                sorted[Math.min(sorted.length - 1, (int) (sorted.length * 0.99))] / 1e6,
+                failures);
+        }
+    }
+}
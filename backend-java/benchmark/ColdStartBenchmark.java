@@ -0,0 +1,118 @@
+package com.webpojede.benchmark;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Studený start: od spuštění procesu po první úspěšnou odpověď.
+ *
+ * Pro každou variantu JVM příznaků opakovaně spustí aplikaci jako nový
+ * proces, dotazuje {@code GET /api/prices} (bez volání Stripe) a měří čas
+ * do prvního 200. Varianty AOT a AOT+CDS vyžadují build
+ * {@code mvn -Pfast-startup package} (target/app.jsa); chybějící archiv
+ * se přeskočí.
+ *
+ * Spuštění:
+ *   mvn -f pom-benchmark.xml compile exec:java \
+ *       -Dexec.mainClass=com.webpojede.benchmark.ColdStartBenchmark \
+ *       -Dexec.args="../target 5"
+ *
+ * Argumenty: adresář target hlavního projektu, počet startů na variantu.
+ *
+ * @author WebPojede
+ */
+public class ColdStartBenchmark {
+
+    private static final Duration START_TIMEOUT = Duration.ofSeconds(60);
+
+    public static void main(String[] args) throws Exception {
+        Path target = Path.of(args.length > 0 ? args[0] : "../target").toAbsolutePath();
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Path jar = target.resolve("payment-service-1.0.0.jar");
+        Path archive = target.resolve("app.jsa");
+        if (!Files.exists(jar)) {
+            throw new IllegalStateException("Missing " + jar + " (mvn -Pfast-startup package)");
+        }
+
+        System.out.printf("Studený start %s, %d běhů na variantu%n", jar, runs);
+        measure("JVM", runs, jar, List.of());
+        measure("AOT", runs, jar, List.of("-Dspring.aot.enabled=true"));
+        if (Files.exists(archive)) {
+            measure("AOT + AppCDS", runs, jar,
+                List.of("-Dspring.aot.enabled=true", "-XX:SharedArchiveFile=" + archive));
+        } else {
+            System.out.printf("AOT + AppCDS: přeskočeno, chybí %s%n", archive);
+        }
+    }
+
+    private static void measure(String label, int runs, Path jar, List<String> jvmFlags) throws Exception {
+        List<Long> millis = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            millis.add(startOnce(jar, jvmFlags));
+        }
+        Collections.sort(millis);
+        System.out.printf("%-14s medián %5d ms, min %5d ms, max %5d ms%n",
+            label, millis.get(millis.size() / 2), millis.get(0), millis.get(millis.size() - 1));
+    }
+
+    private static long startOnce(Path jar, List<String> jvmFlags) throws Exception {
+        int port = freePort();
+        Path data = Files.createTempDirectory("coldstart");
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmFlags);
+        command.add("-jar");
+        command.add(jar.toString());
+        command.add("--server.port=" + port);
+        command.add("--ledger.dir=" + data.resolve("ledger"));
+        command.add("--webhook.journal.dir=" + data.resolve("webhook-journal"));
+
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/api/prices"))
+            .timeout(Duration.ofSeconds(2))
+            .build();
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(data.resolve("app.log").toFile())
+            .start();
+        try {
+            long deadline = start + START_TIMEOUT.toNanos();
+            while (System.nanoTime() < deadline) {
+                try {
+                    if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (IOException e) {
+                    // Ještě neposlouchá
+                }
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Application exited, see " + data.resolve("app.log"));
+                }
+                Thread.sleep(5);
+            }
+            throw new IllegalStateException("Application not ready within " + START_TIMEOUT);
+        } finally {
+            process.destroy();
+            process.waitFor(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
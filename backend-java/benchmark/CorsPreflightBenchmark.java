@@ -0,0 +1,103 @@
+package com.webpojede.benchmark;
+
+import com.webpojede.config.CorsPolicyFilter;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.DefaultCorsProcessor;
+import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CORS preflight a běžný cross-origin požadavek: Spring {@link DefaultCorsProcessor}
+ * (původní cesta přes CorsRegistry) vs. {@link CorsPolicyFilter}.
+ *
+ * Požadavky i odpovědi jsou sdílené mocky, takže se měří jen rozhodnutí
+ * o CORS a zápis hlaviček. {@code -prof gc} ukáže alokace na operaci.
+ *
+ * @author WebPojede
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CorsPreflightBenchmark {
+
+    private static final List<String> ORIGINS = List.of(
+        "http://localhost:3000", "http://localhost:5173", "http://localhost:5500",
+        "http://127.0.0.1:5500", "https://webpojede.cz", "https://www.webpojede.cz");
+    private static final List<String> METHODS = List.of("GET", "POST", "PUT", "DELETE", "OPTIONS");
+    private static final List<String> HEADERS = List.of(
+        "Authorization", "Content-Type", "X-Requested-With", "Accept", "Origin", "Idempotency-Key");
+
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> { };
+
+    private UrlBasedCorsConfigurationSource springSource;
+    private DefaultCorsProcessor springProcessor;
+    private CorsPolicyFilter filter;
+
+    private MockHttpServletRequest preflight;
+    private MockHttpServletRequest actual;
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setup() {
+        // Původní addCorsMappings("/api/**")
+        CorsConfiguration configuration = new CorsConfiguration();
+        configuration.setAllowedOrigins(ORIGINS);
+        configuration.setAllowedMethods(METHODS);
+        configuration.setAllowedHeaders(List.of("*"));
+        configuration.setAllowCredentials(true);
+        configuration.setMaxAge(3600L);
+        springSource = new UrlBasedCorsConfigurationSource();
+        springSource.registerCorsConfiguration("/api/**", configuration);
+        springProcessor = new DefaultCorsProcessor();
+
+        filter = new CorsPolicyFilter("/api/", ORIGINS, METHODS, HEADERS, List.of("Retry-After"), true, 3600);
+
+        preflight = new MockHttpServletRequest("OPTIONS", "/api/create-payment-intent");
+        preflight.addHeader("Origin", "https://webpojede.cz");
+        preflight.addHeader("Access-Control-Request-Method", "POST");
+        preflight.addHeader("Access-Control-Request-Headers", "content-type, idempotency-key");
+
+        actual = new MockHttpServletRequest("POST", "/api/create-payment-intent");
+        actual.addHeader("Origin", "https://webpojede.cz");
+        actual.addHeader("Content-Type", "application/json");
+
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse preflightSpring() throws Exception {
+        response.reset();
+        springProcessor.processRequest(springSource.getCorsConfiguration(preflight), preflight, response);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse preflightPrecomputed() throws Exception {
+        response.reset();
+        filter.doFilter(preflight, response, NO_OP_CHAIN);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse actualSpring() throws Exception {
+        response.reset();
+        springProcessor.processRequest(springSource.getCorsConfiguration(actual), actual, response);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse actualPrecomputed() throws Exception {
+        response.reset();
+        filter.doFilter(actual, response, NO_OP_CHAIN);
+        return response;
+    }
+}
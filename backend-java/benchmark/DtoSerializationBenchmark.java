@@ -0,0 +1,66 @@
+package com.webpojede.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.webpojede.controller.StripeController;
+import com.webpojede.controller.SubscriptionController;
+import com.webpojede.service.PaymentStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON (de)serializace request/response DTO přes Jackson – stejně jako Spring MVC.
+ *
+ * @author WebPojede
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DtoSerializationBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private byte[] paymentRequestJson;
+    private byte[] subscriptionRequestJson;
+    private Map<String, String> paymentIntentResponse;
+    private Map<String, Object> paymentStatusResponse;
+
+    @Setup
+    public void setup() {
+        paymentRequestJson = ("{\"amount\":499000,\"currency\":\"czk\","
+            + "\"description\":\"Webové stránky - Startovací poplatek\",\"productId\":\"web-standard\"}")
+            .getBytes(StandardCharsets.UTF_8);
+        subscriptionRequestJson = "{\"priceId\":\"price_1PDigitalMonthly\",\"email\":\"klient@example.cz\"}"
+            .getBytes(StandardCharsets.UTF_8);
+        paymentIntentResponse = Map.of(
+            "clientSecret", "pi_3Q9xYzLkdIwHu7ix0aBcDeFg_secret_Zx81kLmQ0pRsTuVw",
+            "paymentIntentId", "pi_3Q9xYzLkdIwHu7ix0aBcDeFg");
+        paymentStatusResponse = new PaymentStatus("pi_3Q9xYzLkdIwHu7ix0aBcDeFg", "succeeded", 499_000L, "czk")
+            .toResponse();
+    }
+
+    @Benchmark
+    public StripeController.PaymentRequest readPaymentRequest() throws Exception {
+        return objectMapper.readValue(paymentRequestJson, StripeController.PaymentRequest.class);
+    }
+
+    @Benchmark
+    public SubscriptionController.SubscriptionRequest readSubscriptionRequest() throws Exception {
+        return objectMapper.readValue(subscriptionRequestJson, SubscriptionController.SubscriptionRequest.class);
+    }
+
+    @Benchmark
+    public byte[] writePaymentIntentResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(paymentIntentResponse);
+    }
+
+    @Benchmark
+    public byte[] writePaymentStatusResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(paymentStatusResponse);
+    }
+}
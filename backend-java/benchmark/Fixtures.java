@@ -0,0 +1,88 @@
+package com.webpojede.benchmark;
+
+import com.stripe.net.Webhook;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+/**
+ * Nahrané webhook payloady z adresáře fixtures/ (benchmarky běží offline).
+ *
+ * @author WebPojede
+ */
+public final class Fixtures {
+
+    public static final String WEBHOOK_SECRET = "whsec_benchmark_0123456789abcdef";
+
+    // Self-signed certifikát pro 127.0.0.1 (fixtures/standin-tls.p12)
+    private static final char[] TLS_PASSWORD = "standin".toCharArray();
+
+    private Fixtures() {
+    }
+
+    /**
+     * Načte fixture podle velikosti: small, medium, large.
+     */
+    public static String webhookPayload(String size) {
+        String name = switch (size) {
+            case "small" -> "payment_intent_succeeded";
+            case "medium" -> "charge_refunded";
+            case "large" -> "invoice_payment_succeeded";
+            default -> throw new IllegalArgumentException("Unknown fixture size: " + size);
+        };
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name + ".json")) {
+            if (in == null) {
+                throw new IllegalStateException("Missing fixture " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Stripe-Signature hlavička pro payload (stejný formát, jaký posílá Stripe).
+     */
+    public static String signatureHeader(String payload, long timestamp) {
+        try {
+            String signature = Webhook.Util.computeHmacSha256(WEBHOOK_SECRET, timestamp + "." + payload);
+            return "t=" + timestamp + ",v1=" + signature;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * TLS kontext s certifikátem stand-inu – server z něj bere klíč,
+     * klient mu věří.
+     */
+    public static SSLContext tlsContext() {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/standin-tls.p12")) {
+            if (in == null) {
+                throw new IllegalStateException("Missing fixture standin-tls.p12");
+            }
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            keyStore.load(in, TLS_PASSWORD);
+
+            KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagers.init(keyStore, TLS_PASSWORD);
+            TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagers.init(keyStore);
+
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), null);
+            return context;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.webpojede.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Zátěžový test celé aplikace přes HTTP proti {@link StripeStandIn}.
+ *
+ * Posílá mix checkoutů, předplatných, dotazů na stav platby a rušení
+ * předplatného na běžící aplikaci (s {@code loadtest.properties}). Zátěž
+ * je otevřená – požadavky odchází v pevném rytmu bez ohledu na odpovědi
+ * a latence se měří od plánovaného odeslání, takže zpomalení aplikace
+ * se projeví v percentilech a nezmizí tím, že driver zpomalí s ní.
+ * Webhooky po zaplacení posílá simulátor a vypíše jejich latenci sám.
+ *
+ * Na konci vypíše propustnost, percentily a stavové kódy podle scénáře
+ * a uloží histogramy do {@code target/loadtest/*.hgrm} (porovnání běhů
+ * např. v HdrHistogram plotteru). Limity pro CI:
+ * {@code -Dloadtest.max-p99-ms=300 -Dloadtest.max-error-rate=0.01} –
+ * při překročení skončí s kódem 1.
+ *
+ * Spuštění:
+ *   mvn -f pom-benchmark.xml compile exec:java \
+ *       -Dexec.mainClass=com.webpojede.benchmark.LoadDriver \
+ *       -Dexec.args="http://127.0.0.1:8080 200 60 checkout=60,status=25,subscription=10,cancel=5"
+ *
+ * Argumenty: URL aplikace, požadavků za sekundu, délka v sekundách, mix
+ * scénářů (váhy), zahřívání v sekundách (nezapočítá se, výchozí 10).
+ *
+ * @author WebPojede
+ */
+public class LoadDriver {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final int MAX_IN_FLIGHT = 10_000;
+    // Počet simulovaných klientů (klíč rate limitu) a opakujících se e-mailů
+    private static final int CLIENTS = 5_000;
+    private static final int RECENT_IDS = 4_096;
+
+    enum Scenario { CHECKOUT, STATUS, SUBSCRIPTION, CANCEL }
+
+    private final URI baseUrl;
+    private final HttpClient client;
+    private final Scenario[] mix;
+    private final AtomicReferenceArray<String> recentPayments = new AtomicReferenceArray<>(RECENT_IDS);
+    private final AtomicReferenceArray<String> recentSubscriptions = new AtomicReferenceArray<>(RECENT_IDS);
+    private final Map<Scenario, Stats> stats = new EnumMap<>(Scenario.class);
+    private volatile boolean recording;
+
+    LoadDriver(URI baseUrl, Scenario[] mix) {
+        this.baseUrl = baseUrl;
+        this.mix = mix;
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+        for (Scenario scenario : Scenario.values()) {
+            stats.put(scenario, new Stats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        URI baseUrl = URI.create(args.length > 0 ? args[0] : "http://127.0.0.1:8080");
+        int rate = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int durationSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+        String mix = args.length > 3 ? args[3] : "checkout=60,status=25,subscription=10,cancel=5";
+        int warmupSeconds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        LoadDriver driver = new LoadDriver(baseUrl, parseMix(mix));
+        driver.awaitApplication();
+
+        System.out.printf("Zátěž: %s, %d req/s, %d s (+%d s zahřívání), mix %s%n",
+            baseUrl, rate, durationSeconds, warmupSeconds, mix);
+        driver.run(rate, Duration.ofSeconds(warmupSeconds), false);
+        long dropped = driver.run(rate, Duration.ofSeconds(durationSeconds), true);
+
+        boolean passed = driver.report(durationSeconds, dropped, Path.of("target", "loadtest"));
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Počká, až aplikace odpovídá (katalog tarifů se načítá po startu).
+     */
+    private void awaitApplication() throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(baseUrl.resolve("/api/prices")).GET().build();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (System.nanoTime() < deadline) {
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200 && response.body().contains(StripeStandIn.PRICE_ID)) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Aplikace ještě nestartuje
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("Application at " + baseUrl + " not ready (is it running with "
+            + "loadtest.properties and is StripeStandIn up?)");
+    }
+
+    /**
+     * Otevřená zátěž: i-tý požadavek má plánovaný čas start + i / rate.
+     *
+     * @return počet požadavků, které se neodeslaly (příliš mnoho rozběhnutých)
+     */
+    long run(int rate, Duration duration, boolean record) throws InterruptedException {
+        recording = record;
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long total = duration.toSeconds() * rate;
+        long start = System.nanoTime();
+        long dropped = 0;
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < total; i++) {
+                long intended = start + i * periodNanos;
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                if (!inFlight.tryAcquire()) {
+                    dropped++;
+                    continue;
+                }
+                Scenario scenario = mix[ThreadLocalRandom.current().nextInt(mix.length)];
+                executor.execute(() -> {
+                    try {
+                        execute(scenario, intended);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        return dropped;
+    }
+
+    private void execute(Scenario scenario, long intended) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String clientKey = "load-" + random.nextInt(CLIENTS);
+        HttpRequest request = switch (scenario) {
+            case CHECKOUT -> post("/api/create-payment-intent", clientKey,
+                "{\"amount\":49900,\"currency\":\"czk\",\"productId\":\"web-standard\"}")
+                .header("Idempotency-Key", UUID.randomUUID().toString())
+                .build();
+            case STATUS -> Optional.ofNullable(recentPayments.get(random.nextInt(RECENT_IDS)))
+                .map(id -> request("/api/payment-status/" + id, clientKey).GET().build())
+                .orElse(null);
+            case SUBSCRIPTION -> post("/api/create-subscription", clientKey,
+                "{\"priceId\":\"" + StripeStandIn.PRICE_ID + "\",\"email\":\"" + clientKey + "@loadtest.cz\"}")
+                .build();
+            case CANCEL -> Optional.ofNullable(recentSubscriptions.get(random.nextInt(RECENT_IDS)))
+                .map(id -> post("/api/cancel-subscription", clientKey, "{\"subscriptionId\":\"" + id + "\"}").build())
+                .orElse(null);
+        };
+        if (request == null) {
+            // Zatím není co dotazovat / rušit
+            return;
+        }
+
+        Stats target = stats.get(scenario);
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            long latency = System.nanoTime() - intended;
+            if (recording) {
+                target.record(response.statusCode(), latency);
+            }
+            if (response.statusCode() == 200) {
+                remember(scenario, response.body(), random);
+            }
+        } catch (IOException e) {
+            if (recording) {
+                target.errors.increment();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void remember(Scenario scenario, String body, ThreadLocalRandom random) throws IOException {
+        switch (scenario) {
+            case CHECKOUT -> {
+                JsonNode id = JSON.readTree(body).get("paymentIntentId");
+                if (id != null) {
+                    recentPayments.set(random.nextInt(RECENT_IDS), id.asText());
+                }
+            }
+            case SUBSCRIPTION -> {
+                JsonNode id = JSON.readTree(body).get("subscriptionId");
+                if (id != null) {
+                    recentSubscriptions.set(random.nextInt(RECENT_IDS), id.asText());
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private HttpRequest.Builder post(String path, String clientKey, String json) {
+        return request(path, clientKey)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(json));
+    }
+
+    private HttpRequest.Builder request(String path, String clientKey) {
+        return HttpRequest.newBuilder(baseUrl.resolve(path))
+            .timeout(REQUEST_TIMEOUT)
+            .header("X-Load-Client", clientKey);
+    }
+
+    /**
+     * @return false pokud běh překročil limity z -Dloadtest.*
+     */
+    boolean report(int durationSeconds, long dropped, Path outputDir) throws IOException {
+        double maxP99Ms = Double.parseDouble(System.getProperty("loadtest.max-p99-ms", "0"));
+        double maxErrorRate = Double.parseDouble(System.getProperty("loadtest.max-error-rate", "0"));
+        boolean passed = true;
+        Files.createDirectories(outputDir);
+
+        System.out.printf("%n%-13s %8s %9s %8s %8s %8s %8s %8s  %s%n",
+            "scénář", "počet", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9", "max", "stavy");
+        for (Map.Entry<Scenario, Stats> entry : stats.entrySet()) {
+            Stats s = entry.getValue();
+            Histogram h = s.latency;
+            long count = h.getTotalCount() + s.errors.sum();
+            if (count == 0) {
+                continue;
+            }
+            long failed = s.errors.sum() + s.statuses.entrySet().stream()
+                .filter(e -> e.getKey() >= 500).mapToLong(e -> e.getValue().sum()).sum();
+            double errorRate = (double) failed / count;
+            double p99 = h.getValueAtPercentile(99) / 1000.0;
+
+            Map<Integer, Long> statuses = new TreeMap<>();
+            s.statuses.forEach((status, adder) -> statuses.put(status, adder.sum()));
+            System.out.printf("%-13s %8d %9.1f %8.1f %8.1f %8.1f %8.1f %8.1f  %s%s%n",
+                entry.getKey().name().toLowerCase(), count, (double) count / durationSeconds,
+                h.getValueAtPercentile(50) / 1000.0, h.getValueAtPercentile(90) / 1000.0, p99,
+                h.getValueAtPercentile(99.9) / 1000.0, h.getMaxValue() / 1000.0, statuses,
+                s.errors.sum() > 0 ? " I/O chyby " + s.errors.sum() : "");
+
+            try (PrintStream out = new PrintStream(
+                    Files.newOutputStream(outputDir.resolve(entry.getKey().name().toLowerCase() + ".hgrm")))) {
+                h.outputPercentileDistribution(out, 1000.0);
+            }
+
+            if (maxP99Ms > 0 && p99 > maxP99Ms) {
+                System.out.printf("  ✗ %s: p99 %.1f ms > limit %.1f ms%n", entry.getKey(), p99, maxP99Ms);
+                passed = false;
+            }
+            if (maxErrorRate > 0 && errorRate > maxErrorRate) {
+                System.out.printf("  ✗ %s: chybovost %.2f %% > limit %.2f %%%n",
+                    entry.getKey(), errorRate * 100, maxErrorRate * 100);
+                passed = false;
+            }
+        }
+        if (dropped > 0) {
+            System.out.printf("Neodesláno %d požadavků (víc než %d rozběhnutých) – aplikace nestíhá%n",
+                dropped, MAX_IN_FLIGHT);
+            passed = passed && maxP99Ms <= 0 && maxErrorRate <= 0;
+        }
+        System.out.printf("Histogramy: %s%n", outputDir.toAbsolutePath());
+        return passed;
+    }
+
+    /**
+     * "checkout=60,status=25" → pole scénářů s četností podle vah.
+     */
+    static Scenario[] parseMix(String mix) {
+        List<Scenario> weighted = new ArrayList<>();
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split("=");
+            Scenario scenario = Scenario.valueOf(kv[0].trim().toUpperCase());
+            int weight = kv.length > 1 ? Integer.parseInt(kv[1].trim()) : 1;
+            for (int i = 0; i < weight; i++) {
+                weighted.add(scenario);
+            }
+        }
+        if (weighted.isEmpty()) {
+            throw new IllegalArgumentException("Empty scenario mix: " + mix);
+        }
+        return weighted.toArray(Scenario[]::new);
+    }
+
+    /**
+     * Latence (µs) a stavové kódy jednoho scénáře.
+     */
+    static final class Stats {
+
+        final Histogram latency = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(2), 3);
+        final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        final LongAdder errors = new LongAdder();
+
+        void record(int status, long latencyNanos) {
+            latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos),
+                latency.getHighestTrackableValue()));
+            statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.webpojede.controller;
+
+import com.stripe.model.PaymentIntent;
+import com.stripe.param.PaymentIntentCreateParams;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sestavení parametrů PaymentIntent a odpovědi v createPaymentIntent.
+ *
+ * Leží v balíčku controlleru kvůli package-private helperům.
+ *
+ * @author WebPojede
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaymentIntentParamsBenchmark {
+
+    private StripeController.PaymentRequest request;
+    private PaymentIntent paymentIntent;
+    private PaymentIntentCreateParams params;
+
+    @Setup
+    public void setup() {
+        request = new StripeController.PaymentRequest();
+        request.setAmount(499_000L);
+        request.setCurrency("CZK");
+        request.setDescription("Webové stránky - Startovací poplatek");
+        request.setProductId("web-standard");
+
+        paymentIntent = new PaymentIntent();
+        paymentIntent.setId("pi_3Q9xYzLkdIwHu7ix0aBcDeFg");
+        paymentIntent.setClientSecret("pi_3Q9xYzLkdIwHu7ix0aBcDeFg_secret_Zx81kLmQ0pRsTuVw");
+
+        params = StripeController.buildPaymentIntentParams(request);
+    }
+
+    @Benchmark
+    public PaymentIntentCreateParams buildParams() {
+        return StripeController.buildPaymentIntentParams(request);
+    }
+
+    /**
+     * Převod parametrů na mapu – to SDK dělá před form-encodingem.
+     */
+    @Benchmark
+    public Map<String, Object> paramsToMap() {
+        return params.toMap();
+    }
+
+    @Benchmark
+    public Map<String, String> buildResponse() {
+        return StripeController.paymentIntentResponse(paymentIntent);
+    }
+}
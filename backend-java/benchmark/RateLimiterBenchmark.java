@@ -0,0 +1,50 @@
+package com.webpojede.benchmark;
+
+import com.webpojede.config.RateLimiter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Režie {@link RateLimiter} na požadavek při souběhu.
+ *
+ * {@code hotKey} – všechna vlákna jeden klíč (globální limit, jeden CAS
+ * bucket), {@code spreadKeys} – klíče rozházené přes 10 000 klientů.
+ * Limit je tak vysoký, že vše projde – měří se cesta povolení.
+ *
+ * @author WebPojede
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+
+    private static final int CLIENTS = 10_000;
+
+    private RateLimiter limiter;
+    private String[] keys;
+
+    @Setup
+    public void setup() {
+        limiter = new RateLimiter(1e12, 1_000_000, 64, 100_000);
+        keys = new String[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            keys[i] = "10.0." + (i / 256) + "." + (i % 256);
+        }
+    }
+
+    @Benchmark
+    public long hotKey() {
+        return limiter.tryAcquire("*", 1, System.nanoTime());
+    }
+
+    @Benchmark
+    public long spreadKeys() {
+        return limiter.tryAcquire(keys[ThreadLocalRandom.current().nextInt(CLIENTS)], 1, System.nanoTime());
+    }
+}
@@ -0,0 +1,193 @@
+package com.webpojede.benchmark;
+
+import com.stripe.Stripe;
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.Subscription;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.PaymentIntentCreateParams;
+import com.webpojede.service.StripeCalls;
+import com.webpojede.service.StripeUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Cvičný výpadek Stripe proti {@link StripeStandIn} s vkládáním chyb.
+ *
+ * Souběžně běží checkout ({@code PaymentIntent.create}) a rušení předplatného
+ * ({@code Subscription.cancel}) přes {@link StripeCalls} s nastavením
+ * z application.properties. Fáze:
+ *   1. zdravý Stripe
+ *   2. pomalé /v1/subscriptions – bulkhead "cancel" se zaplní, checkout běží dál
+ *   3. 60 % chyb /v1/payment_intents – retry do výše budgetu, pak se otevře circuit breaker
+ *   4. zotavení – half-open a zpět closed
+ *
+ * Po každé fázi vypíše úspěšná / chybná / odmítnutá volání, p99, stav
+ * circuit breakerů a počet opakování.
+ *
+ * Spuštění:
+ *   mvn -f pom-benchmark.xml compile exec:java \
+ *       -Dexec.mainClass=com.webpojede.benchmark.ResilienceDrill \
+ *       -Dexec.args="20 50 30"
+ *
+ * Argumenty: délka fáze v sekundách, počet checkout klientů, počet cancel klientů.
+ *
+ * @author WebPojede
+ */
+public class ResilienceDrill {
+
+    private static final Duration THINK_TIME = Duration.ofMillis(10);
+
+    public static void main(String[] args) throws Exception {
+        int phaseSeconds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int checkoutClients = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int cancelClients = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+
+        try (StripeStandIn standIn = StripeStandIn.start(0, Duration.ofMillis(50))) {
+            Stripe.apiKey = "sk_test_standin";
+            Stripe.overrideApiBase(standIn.baseUrl());
+            Stripe.setMaxNetworkRetries(0);
+
+            StripeCalls stripeCalls = BenchmarkBeans.stripeCalls();
+            Duration phase = Duration.ofSeconds(phaseSeconds);
+
+            run("1. zdravý Stripe", stripeCalls, phase, checkoutClients, cancelClients);
+
+            standIn.inject("subscriptions", new StripeStandIn.Fault(0, 1.0, Duration.ofSeconds(5)));
+            run("2. pomalé subscriptions (5 s)", stripeCalls, phase, checkoutClients, cancelClients);
+
+            standIn.clearFaults();
+            standIn.inject("payment_intents", new StripeStandIn.Fault(0.6, 0, Duration.ZERO));
+            run("3. 60 % chyb payment_intents", stripeCalls, phase, checkoutClients, cancelClients);
+
+            standIn.clearFaults();
+            run("4. zotavení", stripeCalls, phase, checkoutClients, cancelClients);
+        }
+    }
+
+    private static void run(String label, StripeCalls stripeCalls, Duration duration,
+                            int checkoutClients, int cancelClients) throws Exception {
+        double retriesBefore = retries();
+        long deadline = System.nanoTime() + duration.toNanos();
+        PaymentIntentCreateParams params = PaymentIntentCreateParams.builder()
+            .setAmount(49_900L)
+            .setCurrency("czk")
+            .build();
+
+        List<Future<Stats>> checkouts = new ArrayList<>();
+        List<Future<Stats>> cancels = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < checkoutClients; i++) {
+                checkouts.add(executor.submit(() -> loop(deadline, () -> {
+                    // Stejný klíč pro všechny pokusy jednoho checkoutu
+                    RequestOptions options = RequestOptions.builder()
+                        .setIdempotencyKey(UUID.randomUUID().toString())
+                        .build();
+                    stripeCalls.execute("PaymentIntent.create", () -> PaymentIntent.create(params, options));
+                })));
+            }
+            for (int i = 0; i < cancelClients; i++) {
+                String subscriptionId = "sub_drill_" + i;
+                // Jako SubscriptionController – cancel jen podle ID, bez retrieve
+                Subscription subscription = new Subscription();
+                subscription.setId(subscriptionId);
+                cancels.add(executor.submit(() -> loop(deadline, () ->
+                    stripeCalls.execute("Subscription.cancel", () -> subscription.cancel()))));
+            }
+        }
+
+        System.out.printf("%n== %s ==%n", label);
+        Stats.merge(checkouts).print("checkout (PaymentIntent.create)");
+        Stats.merge(cancels).print("cancel (Subscription.cancel)");
+        System.out.printf("circuit breaker: checkout=%s, cancel=%s; opakování %d, retry budget %.1f%n",
+            circuitState("checkout"), circuitState("cancel"), Math.round(retries() - retriesBefore),
+            BenchmarkBeans.METER_REGISTRY.get("stripe.api.retry.budget").gauge().value());
+    }
+
+    private static Stats loop(long deadline, Call call) {
+        Stats stats = new Stats();
+        while (System.nanoTime() < deadline) {
+            long start = System.nanoTime();
+            try {
+                call.execute();
+                stats.ok++;
+            } catch (StripeUnavailableException e) {
+                stats.rejected++;
+            } catch (StripeException e) {
+                stats.failed++;
+            }
+            stats.record(System.nanoTime() - start);
+            StripeStandIn.sleep(THINK_TIME);
+        }
+        return stats;
+    }
+
+    private static double retries() {
+        Counter counter = BenchmarkBeans.METER_REGISTRY.find("stripe.api.retries").tag("result", "attempted").counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    /**
+     * Aktuální stav circuit breakeru skupiny (gauge s hodnotou 1).
+     */
+    private static String circuitState(String group) {
+        return BenchmarkBeans.METER_REGISTRY.find("resilience4j.circuitbreaker.state").tag("name", group)
+            .gauges().stream()
+            .filter(gauge -> gauge.value() == 1)
+            .map(gauge -> gauge.getId().getTag("state"))
+            .findFirst()
+            .orElse("-");
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        void execute() throws StripeException;
+    }
+
+    private static final class Stats {
+
+        int ok;
+        int failed;
+        int rejected;
+        long[] latencies = new long[1024];
+        int count;
+
+        void record(long nanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+
+        static Stats merge(List<Future<Stats>> futures) throws Exception {
+            Stats merged = new Stats();
+            for (Future<Stats> future : futures) {
+                Stats stats = future.get();
+                merged.ok += stats.ok;
+                merged.failed += stats.failed;
+                merged.rejected += stats.rejected;
+                for (int i = 0; i < stats.count; i++) {
+                    merged.record(stats.latencies[i]);
+                }
+            }
+            return merged;
+        }
+
+        void print(String label) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            double p99 = count == 0 ? 0 : sorted[Math.min(count - 1, (int) (count * 0.99))] / 1e6;
+            System.out.printf("%-32s ok %6d  chyby %6d  odmítnuto %6d  p99 %7.1f ms%n",
+                label, ok, failed, rejected, p99);
+        }
+    }
+}
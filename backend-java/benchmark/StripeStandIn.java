@@ -0,0 +1,482 @@
+package com.webpojede.benchmark;
+
+import com.stripe.Stripe;
+import com.stripe.net.Webhook;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lokální náhrada Stripe API pro zátěžové benchmarky a {@link LoadDriver}.
+ *
+ * Odpovídá na {@code /v1/payment_intents}, {@code /v1/customers},
+ * {@code /v1/subscriptions}, {@code /v1/invoices} a katalog
+ * ({@code /v1/prices}, {@code /v1/products} s jedním tarifem
+ * {@link #PRICE_ID}) s nastavenou latencí, takže měříme chování našich
+ * vláken, ne rychlost sítě. Latence je buď pevná, nebo log-normální
+ * kolem mediánu ({@link #jitter}). Server sám běží na virtuálních
+ * vláknech, aby nebyl úzkým hrdlem.
+ *
+ * Varianta {@link #startTls} běží přes HTTPS (HTTP/1.1), aby bylo vidět,
+ * kolik stojí TLS handshake nových spojení.
+ *
+ * Přes {@link #inject} lze pro jednotlivé zdroje (payment_intents,
+ * subscriptions) zapnout chyby 500 a pomalé odpovědi – pro ověření
+ * circuit breakeru, bulkheadů a retry v {@code ResilienceDrill}.
+ *
+ * Přes {@link #emitWebhooks} posílá po vytvoření platby podepsaný
+ * {@code payment_intent.succeeded} na webhook aplikace (jako Stripe po
+ * zaplacení) a měří, za jak dlouho ho aplikace potvrdí.
+ *
+ * Samostatné spuštění pro zátěžový test celé aplikace:
+ *   mvn -f pom-benchmark.xml compile exec:java \
+ *       -Dexec.mainClass=com.webpojede.benchmark.StripeStandIn \
+ *       -Dexec.args="12111 120 0.5 http://127.0.0.1:8080/api/webhooks/stripe"
+ *
+ * Argumenty: port, medián latence v ms, rozptyl latence (sigma log-normálního
+ * rozdělení, 0 = pevná), URL webhooku ("none" = bez webhooků). Webhooky se podepisují
+ * {@link Fixtures#WEBHOOK_SECRET} – stejným jako v loadtest.properties.
+ * Podíl chyb 500 a 429: {@code -Dstandin.error-rate=0.01 -Dstandin.rate-limit-rate=0.005}.
+ *
+ * @author WebPojede
+ */
+public class StripeStandIn implements AutoCloseable {
+
+    public static final String PRICE_ID = "price_standin_monthly";
+    public static final String PRODUCT_ID = "prod_standin_web";
+
+    private static final String NOT_FOUND =
+        "{\"error\":{\"type\":\"invalid_request_error\",\"message\":\"Not found\"}}";
+
+    private final HttpServer server;
+    private final Duration latency;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Fault> faults = new ConcurrentHashMap<>();
+    private final Map<String, String> customersByEmail = new ConcurrentHashMap<>();
+    private volatile double jitter;
+
+    private volatile WebhookTarget webhookTarget;
+    private final ScheduledExecutorService webhookScheduler = Executors.newSingleThreadScheduledExecutor();
+    private final HttpClient webhookClient = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .executor(Executors.newVirtualThreadPerTaskExecutor())
+        .build();
+    // Doba od odeslání webhooku po odpověď aplikace, µs
+    private final Histogram webhookLatency = new ConcurrentHistogram(60_000_000L, 3);
+    private final LongAdder webhookFailures = new LongAdder();
+
+    private StripeStandIn(HttpServer server, Duration latency) {
+        this.server = server;
+        this.latency = latency;
+    }
+
+    /**
+     * Spustí server na daném portu (0 = libovolný volný).
+     */
+    public static StripeStandIn start(int port, Duration latency) throws IOException {
+        return start(HttpServer.create(new InetSocketAddress("127.0.0.1", port), 4096), latency);
+    }
+
+    /**
+     * Spustí HTTPS server s certifikátem z {@link Fixtures#tlsContext}.
+     */
+    public static StripeStandIn startTls(int port, Duration latency, SSLContext tlsContext) throws IOException {
+        HttpsServer server = HttpsServer.create(new InetSocketAddress("127.0.0.1", port), 4096);
+        server.setHttpsConfigurator(new HttpsConfigurator(tlsContext));
+        return start(server, latency);
+    }
+
+    private static StripeStandIn start(HttpServer server, Duration latency) {
+        StripeStandIn standIn = new StripeStandIn(server, latency);
+        server.createContext("/v1/payment_intents", standIn::handlePaymentIntents);
+        server.createContext("/v1/subscriptions", standIn::handleSubscriptions);
+        server.createContext("/v1/customers", standIn::handleCustomers);
+        server.createContext("/v1/invoices", standIn::handleInvoices);
+        server.createContext("/v1/prices", standIn::handlePrices);
+        server.createContext("/v1/products", standIn::handleProducts);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        return standIn;
+    }
+
+    public String baseUrl() {
+        String scheme = server instanceof HttpsServer ? "https" : "http";
+        return scheme + "://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Nastaví chyby pro zdroj, např. {@code inject("payment_intents", new Fault(0.5, 0, Duration.ZERO))}.
+     */
+    public void inject(String resource, Fault fault) {
+        faults.put(resource, fault);
+    }
+
+    public void clearFaults() {
+        faults.clear();
+    }
+
+    /**
+     * Log-normální rozptyl latence kolem mediánu (sigma 0.5 ≈ p99 3,2× medián).
+     */
+    public StripeStandIn jitter(double sigma) {
+        this.jitter = sigma;
+        return this;
+    }
+
+    /**
+     * Po vytvoření PaymentIntent (i u předplatného) pošle za {@code delay}
+     * podepsaný {@code payment_intent.succeeded} na {@code url}.
+     *
+     * @param ratio podíl plateb, které se "zaplatí" (0–1)
+     */
+    public void emitWebhooks(URI url, String secret, double ratio, Duration delay) {
+        webhookTarget = new WebhookTarget(url, secret, ratio, delay);
+    }
+
+    /**
+     * Latence potvrzení webhooků aplikací (µs), jen pro čtení.
+     */
+    public Histogram webhookLatency() {
+        return webhookLatency.copy();
+    }
+
+    public long webhookFailures() {
+        return webhookFailures.sum();
+    }
+
+    /**
+     * Zpoždění a případná chyba podle nastaveného {@link Fault}.
+     *
+     * @return true pokud už je odeslaná chybová odpověď
+     */
+    private boolean applyFaults(String resource, HttpExchange exchange) throws IOException {
+        Fault fault = faults.getOrDefault(resource, Fault.NONE);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        sleep(random.nextDouble() < fault.slowRate() ? fault.slowLatency() : sampleLatency(random));
+        double roll = random.nextDouble();
+        if (roll < fault.errorRate()) {
+            exchange.getRequestBody().readAllBytes();
+            respond(exchange, 500, "{\"error\":{\"type\":\"api_error\",\"message\":\"Injected fault\"}}");
+            return true;
+        }
+        if (roll < fault.errorRate() + fault.rateLimitRate()) {
+            exchange.getRequestBody().readAllBytes();
+            respond(exchange, 429, "{\"error\":{\"type\":\"invalid_request_error\",\"code\":\"rate_limit\","
+                + "\"message\":\"Too many requests\"}}");
+            return true;
+        }
+        return false;
+    }
+
+    private Duration sampleLatency(ThreadLocalRandom random) {
+        double sigma = jitter;
+        if (sigma <= 0) {
+            return latency;
+        }
+        return Duration.ofNanos((long) (latency.toNanos() * Math.exp(sigma * random.nextGaussian())));
+    }
+
+    private void handlePaymentIntents(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (applyFaults("payment_intents", exchange)) {
+                return;
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            if ("POST".equals(exchange.getRequestMethod()) && path.equals("/v1/payment_intents")) {
+                Map<String, String> form = parseForm(exchange);
+                String id = "pi_standin_" + sequence.incrementAndGet();
+                String amount = form.getOrDefault("amount", "0");
+                String currency = form.getOrDefault("currency", "czk");
+                respond(exchange, 200, paymentIntentJson(id, amount, currency, "requires_payment_method"));
+                scheduleSucceeded(id, amount, currency);
+            } else if ("GET".equals(exchange.getRequestMethod())) {
+                String id = path.substring(path.lastIndexOf('/') + 1);
+                respond(exchange, 200, paymentIntentJson(id, "10000", "czk", "succeeded"));
+            } else {
+                respond(exchange, 404, NOT_FOUND);
+            }
+        }
+    }
+
+    private void handleSubscriptions(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (applyFaults("subscriptions", exchange)) {
+                return;
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            String id = path.substring(path.lastIndexOf('/') + 1);
+            switch (exchange.getRequestMethod()) {
+                case "GET" -> respond(exchange, 200, subscriptionJson(id, "active"));
+                case "DELETE" -> respond(exchange, 200, subscriptionJson(id, "canceled"));
+                case "POST" -> {
+                    if (!path.equals("/v1/subscriptions")) {
+                        respond(exchange, 404, NOT_FOUND);
+                        return;
+                    }
+                    Map<String, String> form = parseForm(exchange);
+                    if (!PRICE_ID.equals(form.get("items[0][price]"))) {
+                        respond(exchange, 400, "{\"error\":{\"type\":\"invalid_request_error\","
+                            + "\"code\":\"resource_missing\",\"message\":\"No such price\"}}");
+                        return;
+                    }
+                    long n = sequence.incrementAndGet();
+                    String paymentIntentId = "pi_standin_" + n;
+                    respond(exchange, 200, "{\"id\":\"sub_standin_" + n + "\",\"object\":\"subscription\""
+                        + ",\"status\":\"incomplete\",\"customer\":\"" + form.get("customer") + "\""
+                        + ",\"latest_invoice\":{\"id\":\"in_standin_" + n + "\",\"object\":\"invoice\""
+                        + ",\"status\":\"open\",\"payment_intent\":"
+                        + paymentIntentJson(paymentIntentId, "49900", "czk", "requires_payment_method")
+                        + "},\"livemode\":false,\"metadata\":{}}");
+                    scheduleSucceeded(paymentIntentId, "49900", "czk");
+                }
+                default -> respond(exchange, 404, NOT_FOUND);
+            }
+        }
+    }
+
+    /**
+     * Vyhledání podle e-mailu a vytvoření – stejný e-mail vrátí stejného zákazníka.
+     */
+    private void handleCustomers(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (applyFaults("customers", exchange)) {
+                return;
+            }
+
+            switch (exchange.getRequestMethod()) {
+                case "GET" -> {
+                    String email = parseQuery(exchange.getRequestURI().getRawQuery()).get("email");
+                    String id = email != null ? customersByEmail.get(email) : null;
+                    respond(exchange, 200, listJson("/v1/customers", id != null ? customerJson(id, email) : ""));
+                }
+                case "POST" -> {
+                    String email = parseForm(exchange).get("email");
+                    String id = email != null
+                        ? customersByEmail.computeIfAbsent(email, e -> "cus_standin_" + sequence.incrementAndGet())
+                        : "cus_standin_" + sequence.incrementAndGet();
+                    respond(exchange, 200, customerJson(id, email));
+                }
+                default -> respond(exchange, 404, NOT_FOUND);
+            }
+        }
+    }
+
+    private void handleInvoices(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (applyFaults("invoices", exchange)) {
+                return;
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            if ("GET".equals(exchange.getRequestMethod()) && !path.equals("/v1/invoices")) {
+                String id = path.substring(path.lastIndexOf('/') + 1);
+                respond(exchange, 200, "{\"id\":\"" + id + "\",\"object\":\"invoice\",\"status\":\"paid\""
+                    + ",\"amount_due\":49900,\"currency\":\"czk\",\"livemode\":false,\"metadata\":{}}");
+            } else {
+                respond(exchange, 404, NOT_FOUND);
+            }
+        }
+    }
+
+    private void handlePrices(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (applyFaults("prices", exchange)) {
+                return;
+            }
+            respond(exchange, 200, listJson("/v1/prices", "{\"id\":\"" + PRICE_ID + "\",\"object\":\"price\""
+                + ",\"active\":true,\"type\":\"recurring\",\"product\":\"" + PRODUCT_ID + "\""
+                + ",\"unit_amount\":49900,\"currency\":\"czk\",\"nickname\":\"Měsíčně\""
+                + ",\"recurring\":{\"interval\":\"month\",\"interval_count\":1},\"livemode\":false}"));
+        }
+    }
+
+    private void handleProducts(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (applyFaults("products", exchange)) {
+                return;
+            }
+            respond(exchange, 200, listJson("/v1/products", "{\"id\":\"" + PRODUCT_ID + "\",\"object\":\"product\""
+                + ",\"active\":true,\"name\":\"Web Standard\",\"livemode\":false,\"metadata\":{}}"));
+        }
+    }
+
+    /**
+     * Naplánuje podepsaný {@code payment_intent.succeeded}, pokud jsou webhooky zapnuté.
+     */
+    private void scheduleSucceeded(String paymentIntentId, String amount, String currency) {
+        WebhookTarget target = webhookTarget;
+        if (target == null || ThreadLocalRandom.current().nextDouble() >= target.ratio()) {
+            return;
+        }
+        webhookScheduler.schedule(() -> deliver(target, paymentIntentId, amount, currency),
+            target.delay().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void deliver(WebhookTarget target, String paymentIntentId, String amount, String currency) {
+        long created = System.currentTimeMillis() / 1000;
+        String payload = "{\"id\":\"evt_standin_" + sequence.incrementAndGet() + "\",\"object\":\"event\""
+            + ",\"api_version\":\"" + Stripe.API_VERSION + "\",\"created\":" + created
+            + ",\"type\":\"payment_intent.succeeded\",\"livemode\":false,\"pending_webhooks\":1"
+            + ",\"data\":{\"object\":" + paymentIntentJson(paymentIntentId, amount, currency, "succeeded") + "}}";
+        String signature;
+        try {
+            signature = "t=" + created + ",v1=" + Webhook.Util.computeHmacSha256(target.secret(), created + "." + payload);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(target.url())
+            .header("Content-Type", "application/json")
+            .header("Stripe-Signature", signature)
+            .POST(HttpRequest.BodyPublishers.ofString(payload))
+            .build();
+        long start = System.nanoTime();
+        webhookClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            if (error != null || response.statusCode() != 200) {
+                webhookFailures.increment();
+            } else {
+                webhookLatency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start),
+                    webhookLatency.getHighestTrackableValue()));
+            }
+        });
+    }
+
+    static String listJson(String url, String item) {
+        return "{\"object\":\"list\",\"url\":\"" + url + "\",\"has_more\":false,\"data\":[" + item + "]}";
+    }
+
+    static String customerJson(String id, String email) {
+        return "{\"id\":\"" + id + "\",\"object\":\"customer\""
+            + (email != null ? ",\"email\":\"" + email + "\"" : "")
+            + ",\"livemode\":false,\"metadata\":{}}";
+    }
+
+    static String subscriptionJson(String id, String status) {
+        return "{\"id\":\"" + id + "\",\"object\":\"subscription\",\"status\":\"" + status + "\""
+            + ",\"livemode\":false,\"metadata\":{}}";
+    }
+
+    static String paymentIntentJson(String id, String amount, String currency, String status) {
+        return "{\"id\":\"" + id + "\",\"object\":\"payment_intent\",\"amount\":" + amount
+            + ",\"currency\":\"" + currency + "\",\"status\":\"" + status + "\""
+            + ",\"client_secret\":\"" + id + "_secret_standin\",\"livemode\":false,\"metadata\":{}}";
+    }
+
+    static Map<String, String> parseForm(HttpExchange exchange) throws IOException {
+        return parseQuery(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    static Map<String, String> parseQuery(String body) {
+        Map<String, String> form = new HashMap<>();
+        if (body == null) {
+            return form;
+        }
+        for (String pair : body.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                form.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return form;
+    }
+
+    static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.getResponseHeaders().set("Request-Id", "req_standin");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        webhookScheduler.shutdownNow();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 12111;
+        long latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 120;
+        double sigma = args.length > 2 ? Double.parseDouble(args[2]) : 0.5;
+        String webhookUrl = args.length > 3 ? args[3] : "http://127.0.0.1:8080/api/webhooks/stripe";
+        if ("none".equals(webhookUrl)) {
+            webhookUrl = null;
+        }
+
+        StripeStandIn standIn = StripeStandIn.start(port, Duration.ofMillis(latencyMs)).jitter(sigma);
+        Fault fault = new Fault(Double.parseDouble(System.getProperty("standin.error-rate", "0")),
+            Double.parseDouble(System.getProperty("standin.rate-limit-rate", "0")), 0, Duration.ZERO);
+        for (String resource : new String[] {"payment_intents", "subscriptions", "customers", "invoices"}) {
+            standIn.inject(resource, fault);
+        }
+        if (webhookUrl != null) {
+            standIn.emitWebhooks(URI.create(webhookUrl), Fixtures.WEBHOOK_SECRET, 1.0, Duration.ofSeconds(2));
+        }
+        System.out.printf("Stripe simulátor: %s, medián latence %d ms, sigma %.2f, webhooky %s%n",
+            standIn.baseUrl(), latencyMs, sigma, webhookUrl != null ? webhookUrl : "vypnuté");
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            Histogram webhooks = standIn.webhookLatency();
+            System.out.printf("Webhooky: %d potvrzeno, %d chyb, p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                webhooks.getTotalCount(), standIn.webhookFailures(),
+                webhooks.getValueAtPercentile(50) / 1000.0, webhooks.getValueAtPercentile(99) / 1000.0,
+                webhooks.getMaxValue() / 1000.0);
+            standIn.close();
+            stopped.countDown();
+        }));
+        stopped.await();
+    }
+
+    /**
+     * Podíl odpovědí 500, podíl odpovědí 429, podíl pomalých odpovědí a jejich latence.
+     */
+    public record Fault(double errorRate, double rateLimitRate, double slowRate, Duration slowLatency) {
+        public static final Fault NONE = new Fault(0, 0, 0, Duration.ZERO);
+
+        public Fault(double errorRate, double slowRate, Duration slowLatency) {
+            this(errorRate, 0, slowRate, slowLatency);
+        }
+    }
+
+    private record WebhookTarget(URI url, String secret, double ratio, Duration delay) {
+    }
+}
@@ -0,0 +1,139 @@
+package com.webpojede.benchmark;
+
+import com.stripe.Stripe;
+import com.stripe.model.PaymentIntent;
+import com.stripe.net.ApiResource;
+import com.stripe.net.HttpClient;
+import com.stripe.net.HttpURLConnectionClient;
+import com.stripe.net.LiveStripeResponseGetter;
+import com.stripe.param.PaymentIntentCreateParams;
+import com.webpojede.config.PooledStripeHttpClient;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Porovnání HTTP transportu Stripe SDK: výchozí HttpURLConnection vs.
+ * {@link PooledStripeHttpClient}.
+ *
+ * Proti lokálnímu HTTPS {@link StripeStandIn} běží N souběžných klientů,
+ * každý posílá M volání {@code PaymentIntent.create} za sebou. Výchozí
+ * transport drží jen 5 keep-alive spojení (http.maxConnections), zbytek
+ * volání platí nový TLS handshake – to je rozdíl v p50/p99.
+ *
+ * JDK HttpsServer umí jen HTTP/1.1, HTTP/2 multiplexing se tady tedy
+ * neprojeví (klient si přes ALPN vyjedná HTTP/1.1).
+ *
+ * Spuštění:
+ *   mvn -f pom-benchmark.xml compile exec:java \
+ *       -Dexec.mainClass=com.webpojede.benchmark.StripeTransportBenchmark \
+ *       -Dexec.args="64 50 20"
+ *
+ * Argumenty: počet souběžných klientů, volání na klienta, latence Stripe v ms.
+ *
+ * @author WebPojede
+ */
+public class StripeTransportBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int callsPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        long latencyMs = args.length > 2 ? Long.parseLong(args[2]) : 20;
+
+        SSLContext tlsContext = Fixtures.tlsContext();
+        // Výchozí transport SDK jde přes HttpsURLConnection
+        HttpsURLConnection.setDefaultSSLSocketFactory(tlsContext.getSocketFactory());
+
+        try (StripeStandIn standIn = StripeStandIn.startTls(0, Duration.ofMillis(latencyMs), tlsContext)) {
+            Stripe.apiKey = "sk_test_standin";
+            Stripe.overrideApiBase(standIn.baseUrl());
+            Stripe.setMaxNetworkRetries(0);
+
+            System.out.printf("Stripe stand-in: %s, latence %d ms, %d klientů × %d volání%n",
+                standIn.baseUrl(), latencyMs, clients, callsPerClient);
+
+            HttpClient pooled = new PooledStripeHttpClient(
+                java.net.http.HttpClient.newBuilder()
+                    .version(java.net.http.HttpClient.Version.HTTP_2)
+                    .connectTimeout(Duration.ofSeconds(3))
+                    .sslContext(tlsContext)
+                    .build(),
+                Duration.ofSeconds(30), Map.of(), clients, Duration.ofSeconds(5));
+            HttpClient urlConnection = new HttpURLConnectionClient();
+
+            // Zahřátí JIT obou transportů
+            run(urlConnection, clients, Math.max(1, callsPerClient / 5));
+            run(pooled, clients, Math.max(1, callsPerClient / 5));
+
+            Result baseline = run(urlConnection, clients, callsPerClient);
+            Result pooledResult = run(pooled, clients, callsPerClient);
+
+            baseline.print("HttpURLConnection (SDK)");
+            pooledResult.print("PooledStripeHttpClient");
+            System.out.printf("p50 %.1fx, p99 %.1fx rychlejší%n",
+                baseline.percentile(0.50) / pooledResult.percentile(0.50),
+                baseline.percentile(0.99) / pooledResult.percentile(0.99));
+        }
+    }
+
+    private static Result run(HttpClient transport, int clients, int callsPerClient) throws Exception {
+        ApiResource.setStripeResponseGetter(new LiveStripeResponseGetter(transport));
+        PaymentIntentCreateParams params = PaymentIntentCreateParams.builder()
+            .setAmount(49_900L)
+            .setCurrency("czk")
+            .build();
+
+        List<Future<long[]>> futures = new ArrayList<>(clients);
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                futures.add(executor.submit(() -> {
+                    long[] latencies = new long[callsPerClient];
+                    for (int i = 0; i < callsPerClient; i++) {
+                        long callStart = System.nanoTime();
+                        PaymentIntent.create(params);
+                        latencies[i] = System.nanoTime() - callStart;
+                    }
+                    return latencies;
+                }));
+            }
+
+            long[] latencies = new long[clients * callsPerClient];
+            int failures = 0;
+            for (int c = 0; c < clients; c++) {
+                try {
+                    System.arraycopy(futures.get(c).get(), 0, latencies, c * callsPerClient, callsPerClient);
+                } catch (Exception e) {
+                    failures += callsPerClient;
+                }
+            }
+            return new Result(latencies, failures, System.nanoTime() - start);
+        }
+    }
+
+    record Result(long[] latencies, int failures, long elapsedNanos) {
+
+        Result {
+            latencies = latencies.clone();
+            Arrays.sort(latencies);
+        }
+
+        double percentile(double p) {
+            return latencies[Math.min(latencies.length - 1, (int) (latencies.length * p))] / 1e6;
+        }
+
+        void print(String label) {
+            System.out.printf("%-26s %8.0f volání/s  p50 %6.1f ms  p99 %7.1f ms  max %7.1f ms  chyby %d%n",
+                label, latencies.length / (elapsedNanos / 1e9),
+                percentile(0.50), percentile(0.99), latencies[latencies.length - 1] / 1e6, failures);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.webpojede.benchmark;
+
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.model.Event;
+import com.stripe.model.StripeObject;
+import com.stripe.net.ApiResource;
+import com.stripe.net.Webhook;
+import com.webpojede.webhook.EventEnvelope;
+import com.webpojede.webhook.StripeEventDispatcher;
+import com.webpojede.webhook.WebhookBodyPool;
+import com.webpojede.webhook.WebhookSignature;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Celá cesta webhooku od těla requestu po deserializaci ve workeru:
+ * původní {@code @RequestBody String} vs. raw bajty z poolu.
+ *
+ * Alokace na událost ukáže gc profiler:
+ *   java -jar target/benchmarks.jar WebhookIngestPath -prof gc
+ * a sloupec gc.alloc.rate.norm (B/op). Fixture "large" je
+ * invoice.payment_succeeded, který dispatcher nezpracovává – raw cesta
+ * ho jen ověří a potvrdí.
+ *
+ * @author WebPojede
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class WebhookIngestPathBenchmark {
+
+    private static final int MAX_BODY_BYTES = 1024 * 1024;
+
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    private byte[] requestBody;
+    private String sigHeader;
+
+    private WebhookBodyPool bodyPool;
+    private WebhookSignature signature;
+    private StripeEventDispatcher dispatcher;
+
+    @Setup
+    public void setup() {
+        String payload = Fixtures.webhookPayload(size);
+        requestBody = payload.getBytes(StandardCharsets.UTF_8);
+        sigHeader = Fixtures.signatureHeader(payload, System.currentTimeMillis() / 1000);
+
+        bodyPool = new WebhookBodyPool(64, 16 * 1024, 256 * 1024);
+        // Tolerance 0 stejně jako ve WebhookParsingBenchmark
+        signature = new WebhookSignature(Fixtures.WEBHOOK_SECRET, 0);
+        dispatcher = BenchmarkBeans.eventDispatcher();
+    }
+
+    /**
+     * Původní cesta: String z těla, podpis nad Stringem, peek, getBytes
+     * pro žurnál a deserializace každé události.
+     */
+    @Benchmark
+    public Optional<StripeObject> stringBody() throws IOException, SignatureVerificationException {
+        String payload = new String(new ByteArrayInputStream(requestBody).readAllBytes(), StandardCharsets.UTF_8);
+        Webhook.Signature.verifyHeader(payload, sigHeader, Fixtures.WEBHOOK_SECRET, 0);
+        EventEnvelope.peek(payload);
+        byte[] journal = payload.getBytes(StandardCharsets.UTF_8);
+        if (journal.length == 0) {
+            return Optional.empty();
+        }
+        Event event = ApiResource.GSON.fromJson(payload, Event.class);
+        return event.getDataObjectDeserializer().getObject();
+    }
+
+    /**
+     * Nová cesta: tělo do bufferu z poolu, podpis a peek nad bajty,
+     * kopie pro workera a deserializace jen zpracovávaných typů.
+     */
+    @Benchmark
+    public Optional<StripeObject> pooledRawBody() throws IOException, SignatureVerificationException {
+        WebhookBodyPool.Body body = bodyPool.acquire();
+        try {
+            body.readFrom(new ByteArrayInputStream(requestBody), MAX_BODY_BYTES);
+            signature.verify(sigHeader, body.array(), body.length());
+            EventEnvelope envelope = EventEnvelope.peek(body.array(), body.length());
+            if (!dispatcher.handles(envelope.type())) {
+                return Optional.empty();
+            }
+            byte[] workerCopy = body.copy();
+            Event event = ApiResource.GSON.fromJson(
+                new InputStreamReader(new ByteArrayInputStream(workerCopy), StandardCharsets.UTF_8), Event.class);
+            return event.getDataObjectDeserializer().getObject();
+        } finally {
+            bodyPool.release(body);
+        }
+    }
+
+    /**
+     * Jen ověření podpisu – String API Stripe SDK.
+     */
+    @Benchmark
+    public boolean verifyString() throws SignatureVerificationException {
+        return Webhook.Signature.verifyHeader(
+            new String(requestBody, StandardCharsets.UTF_8), sigHeader, Fixtures.WEBHOOK_SECRET, 0);
+    }
+
+    /**
+     * Jen ověření podpisu nad bajty.
+     */
+    @Benchmark
+    public byte[] verifyBytes() throws SignatureVerificationException {
+        signature.verify(sigHeader, requestBody, requestBody.length);
+        return requestBody;
+    }
+}
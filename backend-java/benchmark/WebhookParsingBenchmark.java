@@ -0,0 +1,74 @@
+package com.webpojede.benchmark;
+
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.model.Event;
+import com.stripe.model.StripeObject;
+import com.stripe.net.ApiResource;
+import com.stripe.net.Webhook;
+import com.webpojede.webhook.EventEnvelope;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ověření podpisu a deserializace webhooků pro různě velké payloady.
+ *
+ * Tolerance časového razítka je vypnutá (0), aby podpis během dlouhého
+ * běhu nevypršel – HMAC se počítá stejně.
+ *
+ * @author WebPojede
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WebhookParsingBenchmark {
+
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    private String payload;
+    private String sigHeader;
+
+    @Setup
+    public void setup() {
+        payload = Fixtures.webhookPayload(size);
+        sigHeader = Fixtures.signatureHeader(payload, System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * Aktuální cesta controlleru: jen ověření podpisu.
+     */
+    @Benchmark
+    public boolean verifySignature() throws SignatureVerificationException {
+        return Webhook.Signature.verifyHeader(payload, sigHeader, Fixtures.WEBHOOK_SECRET, 0);
+    }
+
+    /**
+     * Původní cesta: ověření + deserializace celé události.
+     */
+    @Benchmark
+    public Event constructEvent() throws SignatureVerificationException {
+        return Webhook.constructEvent(payload, sigHeader, Fixtures.WEBHOOK_SECRET, 0);
+    }
+
+    /**
+     * Čtení id/typu streamovacím parserem (deduplikace).
+     */
+    @Benchmark
+    public EventEnvelope peekEnvelope() {
+        return EventEnvelope.peek(payload);
+    }
+
+    /**
+     * Deserializace ve workeru: Event + datový objekt.
+     */
+    @Benchmark
+    public Optional<StripeObject> deserializeDataObject() {
+        Event event = ApiResource.GSON.fromJson(payload, Event.class);
+        return event.getDataObjectDeserializer().getObject();
+    }
+}
@@ -0,0 +1,155 @@
+package com.webpojede.webhook;
+
+import com.webpojede.benchmark.Fixtures;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link EventEnvelope}: ruční skener nad bajty ({@code peek(byte[], int)},
+ * ingest webhooků) musí dát stejné id a typ jako streamovací parser
+ * ({@code peek(String)}, {@code peekWithObjectKey}, přehrávání).
+ *
+ * @author WebPojede
+ */
+class EventEnvelopeTest {
+
+    @Test
+    void stripeFixtures() {
+        for (String size : new String[] {"small", "medium", "large"}) {
+            String payload = Fixtures.webhookPayload(size);
+            EventEnvelope envelope = assertSameIdAndType(payload);
+            assertEquals(envelope.id(), EventEnvelope.peekWithObjectKey(payload).id());
+        }
+    }
+
+    @Test
+    void escapedQuotesInValues() {
+        EventEnvelope envelope = assertSameIdAndType(
+            "{\"id\":\"evt_\\\"1\\\"\",\"type\":\"payment_intent.succeeded\"}");
+        assertEquals("evt_\"1\"", envelope.id());
+        assertEquals("payment_intent.succeeded", envelope.type());
+    }
+
+    @Test
+    void unicodeEscapesInValues() {
+        EventEnvelope envelope = assertSameIdAndType(
+            "{\"id\":\"evt_\\u00e9\",\"type\":\"payment_intent.succ\\u0065eded\"}");
+        assertEquals("evt_é", envelope.id());
+        assertEquals("payment_intent.succeeded", envelope.type());
+    }
+
+    @Test
+    void escapedKey() {
+        EventEnvelope envelope = assertSameIdAndType("{\"\\u0069d\":\"evt_1\",\"typ\\u0065\":\"charge.refunded\"}");
+        assertEquals("evt_1", envelope.id());
+        assertEquals("charge.refunded", envelope.type());
+    }
+
+    @Test
+    void escapedQuoteInOtherValue() {
+        EventEnvelope envelope = assertSameIdAndType(
+            "{\"object\":\"event\",\"note\":\"\\\"id\\\":\\\"fake\\\"\",\"id\":\"evt_1\",\"type\":\"charge.refunded\"}");
+        assertEquals("evt_1", envelope.id());
+    }
+
+    @Test
+    void nestedFieldsBeforeTopLevel() {
+        String payload = "{\"data\":{\"object\":{\"type\":\"nested\",\"id\":\"pi_1\",\"list\":[{\"id\":\"x\"}]}},"
+            + "\"request\":{\"id\":null},\"type\":\"payment_intent.succeeded\",\"id\":\"evt_1\"}";
+        EventEnvelope envelope = assertSameIdAndType(payload);
+        assertEquals("evt_1", envelope.id());
+        assertEquals("payment_intent.succeeded", envelope.type());
+        assertEquals("pi_1", EventEnvelope.peekWithObjectKey(payload).objectKey());
+    }
+
+    @Test
+    void objectKeyFieldOrder() {
+        // payment_intent má přednost před id objektu, ať je v data.object kdekoli
+        assertEquals("pi_1", EventEnvelope.peekWithObjectKey(
+            "{\"id\":\"evt_1\",\"type\":\"charge.refunded\",\"data\":{\"object\":"
+                + "{\"id\":\"ch_1\",\"metadata\":{\"id\":\"m\"},\"payment_intent\":\"pi_1\"}}}").objectKey());
+        assertEquals("pi_1", EventEnvelope.peekWithObjectKey(
+            "{\"data\":{\"previous_attributes\":{\"id\":\"old\"},\"object\":"
+                + "{\"payment_intent\":\"pi_1\",\"id\":\"ch_1\"}},\"type\":\"charge.refunded\",\"id\":\"evt_1\"}").objectKey());
+        assertEquals("cus_1", EventEnvelope.peekWithObjectKey(
+            "{\"type\":\"customer.created\",\"data\":{\"object\":{\"email\":\"a@b.cz\",\"id\":\"cus_1\"}},"
+                + "\"id\":\"evt_1\"}").objectKey());
+        // payment_intent: null (charge bez platby) – klíčem je id objektu
+        assertEquals("ch_1", EventEnvelope.peekWithObjectKey(
+            "{\"id\":\"evt_1\",\"type\":\"charge.refunded\",\"data\":{\"object\":"
+                + "{\"payment_intent\":null,\"id\":\"ch_1\"}}}").objectKey());
+    }
+
+    @Test
+    void missingType() {
+        EventEnvelope envelope = assertSameIdAndType("{\"id\":\"evt_1\",\"data\":{\"object\":{\"type\":\"x\"}}}");
+        assertEquals("evt_1", envelope.id());
+        assertNull(envelope.type());
+    }
+
+    @Test
+    void nonStringValuesIgnored() {
+        EventEnvelope envelope = assertSameIdAndType("{\"id\":123,\"type\":[\"a\"],\"x\":{\"id\":\"y\"}}");
+        assertNull(envelope.id());
+        assertNull(envelope.type());
+    }
+
+    @Test
+    void truncatedBeforeIdAndType() {
+        for (String payload : new String[] {
+            "", "   ", "{", "{\"id\":\"evt_1\"", "{\"id\":\"evt_1\",", "{\"id\":\"evt_1\",\"ty",
+            "{\"id\":\"ev", "{\"data\":{\"object\":{\"id\":\"pi_1\"}},\"type\":\"x\"", "[]", "null"}) {
+            assertThrows(IllegalArgumentException.class, () -> peekBytes(payload), payload);
+            assertThrows(IllegalArgumentException.class, () -> EventEnvelope.peek(payload), payload);
+        }
+    }
+
+    @Test
+    void truncatedAfterIdAndType() {
+        // Obě varianty končí, jakmile znají id i typ – zbytek těla neověřují
+        EventEnvelope envelope = assertSameIdAndType("{\"id\":\"evt_1\",\"type\":\"charge.refunded\",\"data\":{\"obj");
+        assertEquals("evt_1", envelope.id());
+        assertEquals("charge.refunded", envelope.type());
+    }
+
+    @Test
+    void crlfLineEndings() {
+        String payload = "{\r\n  \"id\": \"evt_1\",\r\n  \"object\": \"event\",\r\n  \"data\": {\r\n"
+            + "    \"object\": {\r\n      \"id\": \"pi_1\"\r\n    }\r\n  },\r\n"
+            + "  \"type\" :\r\n \"payment_intent.succeeded\"\r\n}\r\n";
+        EventEnvelope envelope = assertSameIdAndType(payload);
+        assertEquals("evt_1", envelope.id());
+        assertEquals("payment_intent.succeeded", envelope.type());
+        assertEquals("pi_1", EventEnvelope.peekWithObjectKey(payload).objectKey());
+    }
+
+    @Test
+    void ignoresBytesAfterLength() {
+        // Buffer z poolu je delší než tělo
+        byte[] body = "{\"id\":\"evt_1\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] buffer = Arrays.copyOf(body, body.length + 32);
+        Arrays.fill(buffer, body.length, buffer.length, (byte) '"');
+        EventEnvelope envelope = EventEnvelope.peek(buffer, body.length);
+        assertEquals("evt_1", envelope.id());
+        assertNull(envelope.type());
+    }
+
+    private static EventEnvelope assertSameIdAndType(String payload) {
+        EventEnvelope fromBytes = peekBytes(payload);
+        EventEnvelope fromString = EventEnvelope.peek(payload);
+        assertEquals(fromString.id(), fromBytes.id(), "id for " + payload);
+        assertEquals(fromString.type(), fromBytes.type(), "type for " + payload);
+        return fromBytes;
+    }
+
+    private static EventEnvelope peekBytes(String payload) {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        return EventEnvelope.peek(bytes, bytes.length);
+    }
+}
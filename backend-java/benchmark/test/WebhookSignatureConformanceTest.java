@@ -0,0 +1,144 @@
+package com.webpojede.webhook;
+
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.net.Webhook;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link WebhookSignature} musí rozhodnout stejně jako
+ * {@code Webhook.Signature.verifyHeader} ze Stripe SDK – přijmout
+ * a odmítnout tytéž hlavičky. Porovnává se jen výsledek (přijato /
+ * odmítnuto), ne text chyby.
+ *
+ * Spuštění: mvn -f pom-benchmark.xml test
+ *
+ * @author WebPojede
+ */
+class WebhookSignatureConformanceTest {
+
+    private static final String SECRET = "whsec_test_secret";
+    private static final long TOLERANCE = 300;
+    private static final String PAYLOAD = "{\n  \"id\": \"evt_1\",\n  \"type\": \"payment_intent.succeeded\",\n"
+        + "  \"data\": {\"object\": {\"description\": \"WebPojede - Příliš žluťoučký kůň\"}}\n}";
+
+    private final long now = System.currentTimeMillis() / 1000;
+
+    @Test
+    void validSignature() {
+        assertSameDecision(true, "t=" + now + ",v1=" + sign(now, PAYLOAD, SECRET), PAYLOAD);
+    }
+
+    @Test
+    void tamperedPayload() {
+        String header = "t=" + now + ",v1=" + sign(now, PAYLOAD, SECRET);
+        assertSameDecision(false, header, PAYLOAD.replace("evt_1", "evt_2"));
+        assertSameDecision(false, header, PAYLOAD + " ");
+    }
+
+    @Test
+    void wrongSecret() {
+        assertSameDecision(false, "t=" + now + ",v1=" + sign(now, PAYLOAD, "whsec_other"), PAYLOAD);
+    }
+
+    @Test
+    void multipleSignatures() {
+        String valid = sign(now, PAYLOAD, SECRET);
+        String invalid = sign(now, PAYLOAD, "whsec_old");
+        // Rotace secretu: Stripe posílá podpis každým platným secretem
+        assertSameDecision(true, "t=" + now + ",v1=" + invalid + ",v1=" + valid, PAYLOAD);
+        assertSameDecision(true, "t=" + now + ",v1=" + valid + ",v1=" + invalid, PAYLOAD);
+        assertSameDecision(false, "t=" + now + ",v1=" + invalid + ",v1=" + invalid, PAYLOAD);
+        assertSameDecision(true, "t=" + now + ",v0=" + invalid + ",v1=" + valid, PAYLOAD);
+        assertSameDecision(false, "t=" + now + ",v0=" + valid, PAYLOAD);
+        assertSameDecision(false, "t=" + now + ",v1=" + valid.toUpperCase(), PAYLOAD);
+    }
+
+    @Test
+    void missingTimestamp() {
+        String signature = sign(now, PAYLOAD, SECRET);
+        assertSameDecision(false, "v1=" + signature, PAYLOAD);
+        assertSameDecision(false, "t=,v1=" + signature, PAYLOAD);
+        assertSameDecision(false, "", PAYLOAD);
+    }
+
+    @Test
+    void nonNumericTimestamp() {
+        String signature = sign(now, PAYLOAD, SECRET);
+        assertSameDecision(false, "t=abc,v1=" + signature, PAYLOAD);
+        assertSameDecision(false, "t=" + now + "x,v1=" + signature, PAYLOAD);
+        assertSameDecision(false, "t=0,v1=" + sign(0, PAYLOAD, SECRET), PAYLOAD);
+        assertSameDecision(false, "t=-" + now + ",v1=" + signature, PAYLOAD);
+    }
+
+    @Test
+    void nonCanonicalTimestamp() {
+        // SDK podepisuje číslo, ne text z hlavičky
+        String signature = sign(now, PAYLOAD, SECRET);
+        assertSameDecision(true, "t=+" + now + ",v1=" + signature, PAYLOAD);
+        assertSameDecision(true, "t=00" + now + ",v1=" + signature, PAYLOAD);
+    }
+
+    @Test
+    void duplicateTimestamp() {
+        long old = now - 10;
+        String header = "t=" + now + ",t=" + old + ",v1=";
+        assertSameDecision(true, header + sign(now, PAYLOAD, SECRET), PAYLOAD);
+        assertSameDecision(false, header + sign(old, PAYLOAD, SECRET), PAYLOAD);
+    }
+
+    @Test
+    void expiredTimestamp() {
+        long expired = now - TOLERANCE - 60;
+        assertSameDecision(false, "t=" + expired + ",v1=" + sign(expired, PAYLOAD, SECRET), PAYLOAD);
+
+        long recent = now - TOLERANCE + 60;
+        assertSameDecision(true, "t=" + recent + ",v1=" + sign(recent, PAYLOAD, SECRET), PAYLOAD);
+    }
+
+    private static void assertSameDecision(boolean expected, String header, String payload) {
+        boolean sdk = sdkAccepts(header, payload);
+        boolean ours = accepts(header, payload);
+        assertEquals(expected, sdk, "SDK decision for header " + header);
+        assertEquals(sdk, ours, "WebhookSignature differs from SDK for header " + header);
+    }
+
+    private static boolean sdkAccepts(String header, String payload) {
+        try {
+            return Webhook.Signature.verifyHeader(payload, header, SECRET, TOLERANCE);
+        } catch (SignatureVerificationException | RuntimeException e) {
+            // SDK u nečíselného razítka vyhodí NumberFormatException – také odmítnutí
+            return false;
+        }
+    }
+
+    private static boolean accepts(String header, String payload) {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        // Buffer z poolu bývá delší než tělo
+        byte[] buffer = new byte[bytes.length + 16];
+        System.arraycopy(bytes, 0, buffer, 0, bytes.length);
+        try {
+            new WebhookSignature(SECRET, TOLERANCE).verify(header, buffer, bytes.length);
+            return true;
+        } catch (SignatureVerificationException e) {
+            return false;
+        }
+    }
+
+    private static String sign(long timestamp, String payload, String secret) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal((timestamp + "." + payload).getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
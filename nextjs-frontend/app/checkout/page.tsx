@@ -1,6 +1,6 @@
 'use client';
 
-import { useEffect, useState } from 'react';
+import { useEffect, useRef, useState } from 'react';
 import { Elements } from '@stripe/react-stripe-js';
 import { StripeElementsOptions } from '@stripe/stripe-js';
 import { getStripe, API_BASE_URL, formatAmount } from '@/utils/stripe';
@@ -23,6 +23,8 @@ export default function CheckoutPage() {
   const [clientSecret, setClientSecret] = useState<string | null>(null);
   const [isLoading, setIsLoading] = useState(true);
   const [error, setError] = useState<string | null>(null);
+  // Jeden klíč na načtení stránky - opakovaný request nevytvoří druhou platbu
+  const idempotencyKey = useRef<string>(crypto.randomUUID());
 
   useEffect(() => {
     // Vytvoření PaymentIntent při načtení stránky
@@ -32,6 +34,7 @@ export default function CheckoutPage() {
           method: 'POST',
           headers: {
             'Content-Type': 'application/json',
+            'Idempotency-Key': idempotencyKey.current,
           },
           body: JSON.stringify({
             amount: PRODUCT.amount,